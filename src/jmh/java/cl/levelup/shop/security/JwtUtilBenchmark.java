@@ -0,0 +1,58 @@
+package cl.levelup.shop.security;
+
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JwtUtilBenchmark {
+
+    private static final String SECRET = "clave-de-benchmark-con-al-menos-32-bytes-para-hs256";
+
+    private JwtUtil jwtUtil;
+    private JwtUtil jwtUtilSinCache;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtUtil = crear(10_000);
+        // Con cero entradas el cache se purga en cada llamada: mide la verificación completa de la firma
+        jwtUtilSinCache = crear(0);
+        token = jwtUtil.generateToken("jugador@levelup.cl", 7L, "USER");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken("jugador@levelup.cl", 7L, "USER");
+    }
+
+    @Benchmark
+    public Claims extractAllClaims() {
+        return jwtUtil.extractAllClaims(token);
+    }
+
+    @Benchmark
+    public Claims extractAllClaimsSinCache() {
+        return jwtUtilSinCache.extractAllClaims(token);
+    }
+
+    private JwtUtil crear(int maxEntradas) {
+        TokenVerificadoCache cache = new TokenVerificadoCache();
+        ReflectionTestUtils.setField(cache, "maxEntradas", maxEntradas);
+        JwtUtil util = new JwtUtil(cache);
+        ReflectionTestUtils.setField(util, "secret", SECRET);
+        ReflectionTestUtils.setField(util, "expiration", 86_400_000L);
+        util.init();
+        return util;
+    }
+}
@@ -0,0 +1,50 @@
+package cl.levelup.shop.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.util.PropertyPlaceholderHelper;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PasswordEncoderBenchmark {
+
+    // "configurado" mide el costo de seguridad.bcrypt.costo tal como lo resolvería la aplicación
+    // (BCRYPT_COSTO o su valor por defecto); con -p costo=12 se compara otro sin tocar la configuración
+    @Param({"configurado"})
+    private String costo;
+
+    private BCryptPasswordEncoder encoder;
+    private String hash;
+
+    @Setup
+    public void setup() throws IOException {
+        encoder = new BCryptPasswordEncoder("configurado".equals(costo) ? costoConfigurado() : Integer.parseInt(costo));
+        hash = encoder.encode("contraseña-de-prueba");
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return encoder.matches("contraseña-de-prueba", hash);
+    }
+
+    private static int costoConfigurado() throws IOException {
+        Properties propiedades = PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"));
+        String valor = new PropertyPlaceholderHelper("${", "}", ":", false)
+                .replacePlaceholders(propiedades.getProperty("seguridad.bcrypt.costo"), System::getenv);
+        return Integer.parseInt(valor.trim());
+    }
+}
@@ -0,0 +1,51 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BusquedaIndexBenchmark {
+
+    @Param({"1000", "100000"})
+    private int tamanoCatalogo;
+
+    @Param({"mouse", "auri", "teclado mecanico razer"})
+    private String consulta;
+
+    private BusquedaIndex busquedaIndex;
+    private List<ProductoResponseDTO> catalogo;
+
+    @Setup
+    public void setup() {
+        catalogo = ServiciosBenchmark.productosDTO(DatosBenchmark.productos(tamanoCatalogo));
+        busquedaIndex = new BusquedaIndex();
+        busquedaIndex.cargarSiEsNecesario(() -> catalogo);
+    }
+
+    @Benchmark
+    public List<Long> indice() {
+        return busquedaIndex.buscar(consulta);
+    }
+
+    // Línea base: equivalente en memoria del LIKE '%termino%' que se usaba antes del índice
+    @Benchmark
+    public long recorridoLineal() {
+        String termino = consulta.toLowerCase();
+        return catalogo.stream()
+                .filter(p -> p.nombre().toLowerCase().contains(termino)
+                        || (p.descripcion() != null && p.descripcion().toLowerCase().contains(termino)))
+                .count();
+    }
+}
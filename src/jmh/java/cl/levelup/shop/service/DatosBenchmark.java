@@ -0,0 +1,90 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.entity.Categoria;
+import cl.levelup.shop.entity.Pedido;
+import cl.levelup.shop.entity.PedidoItem;
+import cl.levelup.shop.entity.Producto;
+import cl.levelup.shop.entity.Usuario;
+import cl.levelup.shop.entity.enums.EstadoPedido;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Datos sintéticos compartidos por los benchmarks; la semilla fija hace comparables las corridas
+final class DatosBenchmark {
+
+    private static final String[] MARCAS = {"Logitech", "Razer", "HyperX", "Sony", "Microsoft", "Corsair", "Asus", "Devir"};
+    private static final String[] TIPOS = {"Mouse", "Teclado", "Auriculares", "Consola", "Control", "Silla", "Monitor", "Juego"};
+    private static final String[] ADJETIVOS = {"Gamer", "Inalámbrico", "Mecánico", "Pro", "RGB", "Ergonómico", "Portátil", "Edición"};
+    private static final String[] CATEGORIAS = {"JM", "AC", "CO", "CG", "SG", "MS", "MP", "PP"};
+
+    private DatosBenchmark() {
+    }
+
+    static List<Producto> productos(int cantidad) {
+        Random random = new Random(42);
+        List<Categoria> categorias = new ArrayList<>();
+        for (String id : CATEGORIAS) {
+            categorias.add(Categoria.builder().id(id).nombre("Categoría " + id).build());
+        }
+
+        List<Producto> productos = new ArrayList<>(cantidad);
+        for (int i = 1; i <= cantidad; i++) {
+            String marca = MARCAS[random.nextInt(MARCAS.length)];
+            String tipo = TIPOS[random.nextInt(TIPOS.length)];
+            String adjetivo = ADJETIVOS[random.nextInt(ADJETIVOS.length)];
+            productos.add(Producto.builder()
+                    .id((long) i)
+                    .code("P" + i)
+                    .nombre(tipo + " " + adjetivo + " " + marca + " " + i)
+                    .categoria(categorias.get(random.nextInt(categorias.size())))
+                    .precio(BigDecimal.valueOf(5_000 + random.nextInt(500_000)))
+                    .stock(random.nextInt(100))
+                    .marca(marca)
+                    .rating(BigDecimal.valueOf(random.nextInt(50), 1))
+                    .descripcion(tipo + " " + adjetivo.toLowerCase() + " de " + marca + " con garantía de un año para jugadores exigentes")
+                    .imagen("/img/productos/" + i + ".png")
+                    .specs("{\"peso\":\"" + random.nextInt(2000) + "g\"}")
+                    .tags("gamer," + tipo.toLowerCase())
+                    .activo(true)
+                    .build());
+        }
+        return productos;
+    }
+
+    static Pedido pedido(List<Producto> productos, int cantidadItems) {
+        Usuario usuario = Usuario.builder()
+                .id(7L)
+                .email("jugador@levelup.cl")
+                .nombre("Ana")
+                .apellido("Pérez")
+                .build();
+        Pedido pedido = Pedido.builder()
+                .id(1L)
+                .usuario(usuario)
+                .estado(EstadoPedido.PAGADO)
+                .direccionEnvio("Av. Siempre Viva 742, Santiago")
+                .fechaPedido(LocalDateTime.of(2024, 5, 1, 12, 0))
+                .build();
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < cantidadItems; i++) {
+            Producto producto = productos.get(i % productos.size());
+            BigDecimal subtotal = producto.getPrecio().multiply(BigDecimal.valueOf(2));
+            pedido.getItems().add(PedidoItem.builder()
+                    .id((long) i + 1)
+                    .pedido(pedido)
+                    .producto(producto)
+                    .cantidad(2)
+                    .precioUnitario(producto.getPrecio())
+                    .subtotal(subtotal)
+                    .build());
+            total = total.add(subtotal);
+        }
+        pedido.setTotal(total);
+        return pedido;
+    }
+}
@@ -0,0 +1,68 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.response.CarritoResponseDTO;
+import cl.levelup.shop.dto.response.PedidoResponseDTO;
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import cl.levelup.shop.entity.Pedido;
+import cl.levelup.shop.entity.Producto;
+import cl.levelup.shop.service.CarritoStore.CarritoEnMemoria;
+import cl.levelup.shop.service.CarritoStore.ItemEnMemoria;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MapeoBenchmark {
+
+    @Param({"10"})
+    private int itemsPorPedido;
+
+    private ProductoService productoService;
+    private PedidoService pedidoService;
+    private CarritoService carritoService;
+    private Producto producto;
+    private Pedido pedido;
+    private CarritoEnMemoria carrito;
+
+    @Setup
+    public void setup() {
+        List<Producto> productos = DatosBenchmark.productos(100);
+        productoService = ServiciosBenchmark.productoService(productos);
+        pedidoService = ServiciosBenchmark.pedidoService(productoService);
+        carritoService = ServiciosBenchmark.carritoService(productoService);
+
+        producto = productos.get(0);
+        pedido = DatosBenchmark.pedido(productos, itemsPorPedido);
+        carrito = new CarritoEnMemoria(1L, 7L, LocalDateTime.of(2024, 5, 1, 12, 0));
+        for (int i = 0; i < itemsPorPedido; i++) {
+            Producto p = productos.get(i);
+            carrito.agregarItem(new ItemEnMemoria((long) i + 1, p.getId(), 1, p.getPrecio()));
+        }
+    }
+
+    @Benchmark
+    public ProductoResponseDTO producto() {
+        return productoService.convertirAResponse(producto);
+    }
+
+    @Benchmark
+    public PedidoResponseDTO pedido() {
+        return pedidoService.convertirAResponse(pedido, pedido.getItems());
+    }
+
+    @Benchmark
+    public CarritoResponseDTO carrito() {
+        return carritoService.convertirAResponse(carrito);
+    }
+}
@@ -0,0 +1,69 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.response.PedidoResponseDTO;
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import cl.levelup.shop.entity.Producto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializacionBenchmark {
+
+    @Param({"50", "1000"})
+    private int tamanoCatalogo;
+
+    // Mismos módulos y opciones por defecto que el ObjectMapper que configura Spring Boot
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private ProductoResponseDTO producto;
+    private List<ProductoResponseDTO> catalogo;
+    private PedidoResponseDTO pedido;
+    private ProductoService productoService;
+
+    @Setup
+    public void setup() {
+        List<Producto> productos = DatosBenchmark.productos(tamanoCatalogo);
+        productoService = ServiciosBenchmark.productoService(productos);
+        PedidoService pedidoService = ServiciosBenchmark.pedidoService(productoService);
+
+        catalogo = ServiciosBenchmark.productosDTO(productos);
+        producto = catalogo.get(0);
+        var entidad = DatosBenchmark.pedido(productos, 10);
+        pedido = pedidoService.convertirAResponse(entidad, entidad.getItems());
+    }
+
+    @Benchmark
+    public byte[] producto() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(producto);
+    }
+
+    @Benchmark
+    public byte[] catalogo() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(catalogo);
+    }
+
+    // Lo que hace ahora GET /productos: bytes ya serializados y comprimidos de la versión vigente
+    @Benchmark
+    public byte[] catalogoPreSerializado() {
+        return productoService.obtenerActivosSerializados().gzip();
+    }
+
+    @Benchmark
+    public byte[] pedido() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(pedido);
+    }
+}
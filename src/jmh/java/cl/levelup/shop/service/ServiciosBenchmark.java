@@ -0,0 +1,74 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import cl.levelup.shop.entity.Producto;
+import cl.levelup.shop.repository.CarritoItemRepository;
+import cl.levelup.shop.repository.CarritoRepository;
+import cl.levelup.shop.repository.CategoriaRepository;
+import cl.levelup.shop.repository.PedidoItemRepository;
+import cl.levelup.shop.repository.PedidoRepository;
+import cl.levelup.shop.repository.ProductoRepository;
+import cl.levelup.shop.repository.UsuarioRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Servicios armados para los benchmarks: solo mapeo a DTOs y el snapshot del catálogo en memoria.
+// Los colaboradores de BD quedan sin asignar aquí, con nombre, en vez de como nulls posicionales en cada benchmark
+final class ServiciosBenchmark {
+
+    private static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
+    private ServiciosBenchmark() {
+    }
+
+    // ProductoService con el snapshot ya cargado: obtenerPorId y los listados no necesitan repositorio
+    static ProductoService productoService(List<Producto> productos) {
+        CatalogoCache catalogoCache = new CatalogoCache(0);
+        ProductoService productoService = productoService(catalogoCache);
+        List<ProductoResponseDTO> dtos = productosDTO(productoService, productos);
+        catalogoCache.obtener(version -> CatalogoSnapshot.construir(version, dtos));
+        return productoService;
+    }
+
+    static List<ProductoResponseDTO> productosDTO(List<Producto> productos) {
+        return productosDTO(productoService(new CatalogoCache(0)), productos);
+    }
+
+    static PedidoService pedidoService(ProductoService productoService) {
+        PedidoRepository pedidoRepository = null;
+        PedidoItemRepository pedidoItemRepository = null;
+        UsuarioRepository usuarioRepository = null;
+        CarritoRepository carritoRepository = null;
+        CarritoItemRepository carritoItemRepository = null;
+        CarritoStore carritoStore = null;
+        return new PedidoService(pedidoRepository, pedidoItemRepository, usuarioRepository, carritoRepository,
+                carritoItemRepository, productoService, carritoStore);
+    }
+
+    static CarritoService carritoService(ProductoService productoService) {
+        CarritoRepository carritoRepository = null;
+        CarritoStore carritoStore = null;
+        return new CarritoService(carritoRepository, carritoStore, productoService);
+    }
+
+    private static ProductoService productoService(CatalogoCache catalogoCache) {
+        ProductoRepository productoRepository = null;
+        CategoriaRepository categoriaRepository = null;
+        PedidoItemRepository pedidoItemRepository = null;
+        EntityManager entityManager = null;
+        return new ProductoService(productoRepository, categoriaRepository, catalogoCache, new BusquedaIndex(),
+                new SugerenciasIndex(), new CatalogoSerializado(OBJECT_MAPPER), pedidoItemRepository, entityManager, OBJECT_MAPPER);
+    }
+
+    private static List<ProductoResponseDTO> productosDTO(ProductoService productoService, List<Producto> productos) {
+        List<ProductoResponseDTO> dtos = new ArrayList<>(productos.size());
+        for (Producto producto : productos) {
+            dtos.add(productoService.convertirAResponse(producto));
+        }
+        return dtos;
+    }
+}
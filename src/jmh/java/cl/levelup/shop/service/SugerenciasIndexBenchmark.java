@@ -0,0 +1,48 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import cl.levelup.shop.dto.response.SugerenciaDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SugerenciasIndexBenchmark {
+
+    @Param({"1000", "100000"})
+    private int tamanoCatalogo;
+
+    // Un prefijo corto coincide con gran parte del catálogo y es el peor caso del ranking
+    @Param({"m", "mou", "logitech"})
+    private String prefijo;
+
+    private SugerenciasIndex sugerenciasIndex;
+
+    @Setup
+    public void setup() {
+        List<ProductoResponseDTO> catalogo = ServiciosBenchmark.productosDTO(DatosBenchmark.productos(tamanoCatalogo));
+        Map<Long, Long> ventas = new HashMap<>();
+        for (ProductoResponseDTO producto : catalogo) {
+            ventas.put(producto.id(), producto.id() % 97);
+        }
+        sugerenciasIndex = new SugerenciasIndex();
+        sugerenciasIndex.cargarSiEsNecesario(() -> catalogo, () -> ventas);
+    }
+
+    @Benchmark
+    public List<SugerenciaDTO> sugerir() {
+        return sugerenciasIndex.sugerir(prefijo, 8);
+    }
+}
@@ -0,0 +1,72 @@
+package cl.levelup.shop.config;
+
+import cl.levelup.shop.service.PasarelaPago;
+import cl.levelup.shop.service.PasarelaProtegida;
+import cl.levelup.shop.service.SimuladorPasarela;
+import cl.levelup.shop.service.WebpayCliente;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+
+@Configuration
+public class PasarelaPagoConfig {
+    
+    private static final String PERFIL_SIMULADOR = "simulador";
+    
+    @Value("${transbank.simulador.latencia-mediana-ms}")
+    private long latenciaMedianaMs;
+    
+    @Value("${transbank.simulador.latencia-p99-ms}")
+    private long latenciaP99Ms;
+    
+    @Value("${transbank.simulador.tasa-fallos}")
+    private double tasaFallos;
+    
+    @Value("${transbank.simulador.tasa-autorizacion}")
+    private double tasaAutorizacion;
+    
+    @Value("${transbank.simulador.retencion-ms}")
+    private long retencionMs;
+    
+    @Value("${transbank.proteccion.max-concurrentes}")
+    private int maxConcurrentes;
+    
+    @Value("${transbank.proteccion.espera-cupo-ms}")
+    private long esperaCupoMs;
+    
+    @Value("${transbank.proteccion.umbral-fallos}")
+    private int umbralFallos;
+    
+    @Value("${transbank.proteccion.apertura-ms}")
+    private long aperturaMs;
+    
+    @Value("${transbank.proteccion.timeout-crear-ms}")
+    private long timeoutCrearMs;
+    
+    @Value("${transbank.proteccion.timeout-confirmar-ms}")
+    private long timeoutConfirmarMs;
+    
+    @Value("${transbank.proteccion.timeout-estado-ms}")
+    private long timeoutEstadoMs;
+    
+    // cerrar() no se infiere como close() o shutdown(): se declara para detener los hilos de la protección
+    @Bean(destroyMethod = "cerrar")
+    public PasarelaPago pasarelaPago(TransbankConfig transbankConfig, MeterRegistry meterRegistry, Environment entorno) {
+        // SIMULADOR permite pruebas de carga de punta a punta sin salir a la red de Transbank. Como autoriza
+        // pagos falsos, además exige el perfil "simulador": una variable de entorno sola no lo activa
+        boolean simulador = "SIMULADOR".equalsIgnoreCase(transbankConfig.getEnvironment());
+        if (simulador && !entorno.acceptsProfiles(Profiles.of(PERFIL_SIMULADOR))) {
+            throw new IllegalStateException("TRANSBANK_ENVIRONMENT=SIMULADOR requiere el perfil '" + PERFIL_SIMULADOR + "'");
+        }
+        PasarelaPago delegada = simulador
+                ? new SimuladorPasarela(latenciaMedianaMs, latenciaP99Ms, tasaFallos, tasaAutorizacion, retencionMs)
+                : new WebpayCliente(transbankConfig, meterRegistry);
+        
+        // El simulador también pasa por la protección para que las pruebas de carga la ejerciten
+        return new PasarelaProtegida(delegada, meterRegistry, maxConcurrentes, esperaCupoMs, umbralFallos,
+                aperturaMs, timeoutCrearMs, timeoutConfirmarMs, timeoutEstadoMs);
+    }
+}
@@ -1,7 +1,9 @@
 package cl.levelup.shop.config;
 
 import cl.levelup.shop.security.JwtAuthenticationFilter;
+import cl.levelup.shop.security.LimiteTasaFilter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -20,6 +22,7 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 public class SecurityConfig {
     
     private final JwtAuthenticationFilter jwtAuthFilter;
+    private final LimiteTasaFilter limiteTasaFilter;
     
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -43,19 +46,26 @@ public class SecurityConfig {
                 // Endpoints de administración (solo ADMIN)
                 .requestMatchers("/api/v1/admin/**").hasRole("ADMIN")
                 
+                // Actuator: health público para el balanceador, métricas solo ADMIN
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
+                
                 // Carrito, pedidos y pagos (usuarios autenticados)
                 .requestMatchers("/api/v1/carrito/**", "/api/v1/pedidos/**", "/api/v1/pagos/**").hasAnyRole("USER", "ADMIN")
                 
                 // Todos los demás requieren autenticación
                 .anyRequest().authenticated()
             )
-            .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+            // Después del JWT para limitar por usuario autenticado y no solo por IP
+            .addFilterAfter(limiteTasaFilter, JwtAuthenticationFilter.class);
         
         return http.build();
     }
     
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${seguridad.bcrypt.costo}") int costo) {
+        // Los hashes con un costo menor se actualizan en el siguiente login exitoso
+        return new BCryptPasswordEncoder(costo);
     }
 }
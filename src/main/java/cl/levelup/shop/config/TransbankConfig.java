@@ -15,6 +15,10 @@ public class TransbankConfig {
     @Value("${transbank.api-key}")
     private String apiKey;
     
+    // Sin timeout, una llamada a un Transbank degradado puede bloquear el hilo indefinidamente
+    @Value("${transbank.timeout-ms}")
+    private int timeoutMs;
+    
     public String getEnvironment() {
         return environment;
     }
@@ -26,4 +30,8 @@ public class TransbankConfig {
     public String getApiKey() {
         return apiKey;
     }
+    
+    public int getTimeoutMs() {
+        return timeoutMs;
+    }
 }
@@ -6,6 +6,7 @@ import cl.levelup.shop.entity.Usuario;
 import cl.levelup.shop.entity.enums.Rol;
 import cl.levelup.shop.exception.BadRequestException;
 import cl.levelup.shop.repository.UsuarioRepository;
+import cl.levelup.shop.security.RevocacionUsuarios;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -30,6 +31,7 @@ public class AdminUsuarioController {
     
     private final UsuarioRepository usuarioRepository;
     private final PasswordEncoder passwordEncoder;
+    private final RevocacionUsuarios revocacionUsuarios;
     
     @GetMapping
     @Operation(summary = "Listar usuarios", description = "Obtiene todos los usuarios del sistema (solo ADMIN)")
@@ -71,6 +73,10 @@ public class AdminUsuarioController {
         
         usuario.setActivo(activo);
         Usuario actualizado = usuarioRepository.save(usuario);
+        // Reactivar no invalida nada: los tokens previos a la desactivación siguen revocados
+        if (!Boolean.TRUE.equals(activo)) {
+            revocacionUsuarios.revocar(id);
+        }
         return ResponseEntity.ok(convertirAResponse(actualizado));
     }
     
@@ -83,6 +89,7 @@ public class AdminUsuarioController {
         
         usuario.setRol(rol);
         Usuario actualizado = usuarioRepository.save(usuario);
+        revocacionUsuarios.revocar(id);
         return ResponseEntity.ok(convertirAResponse(actualizado));
     }
     
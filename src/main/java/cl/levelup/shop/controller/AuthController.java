@@ -4,14 +4,17 @@ import cl.levelup.shop.dto.request.LoginRequestDTO;
 import cl.levelup.shop.dto.request.RegisterRequestDTO;
 import cl.levelup.shop.dto.response.AuthResponseDTO;
 import cl.levelup.shop.dto.response.UsuarioResponseDTO;
-import cl.levelup.shop.security.JwtUtil;
+import cl.levelup.shop.exception.UnauthorizedException;
+import cl.levelup.shop.security.UsuarioPrincipal;
 import cl.levelup.shop.service.UsuarioService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -22,7 +25,6 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
     
     private final UsuarioService usuarioService;
-    private final JwtUtil jwtUtil;
     
     @PostMapping("/register")
     @Operation(summary = "Registrar nuevo usuario", description = "Crea una cuenta de usuario y retorna el token JWT")
@@ -33,17 +35,20 @@ public class AuthController {
     
     @PostMapping("/login")
     @Operation(summary = "Iniciar sesión", description = "Autentica un usuario y retorna el token JWT")
-    public ResponseEntity<AuthResponseDTO> login(@Valid @RequestBody LoginRequestDTO request) {
-        AuthResponseDTO response = usuarioService.login(request);
+    public ResponseEntity<AuthResponseDTO> login(@Valid @RequestBody LoginRequestDTO request,
+                                                 HttpServletRequest httpRequest) {
+        AuthResponseDTO response = usuarioService.login(request, httpRequest.getRemoteAddr());
         return ResponseEntity.ok(response);
     }
     
     @GetMapping("/me")
     @Operation(summary = "Obtener usuario actual", description = "Obtiene los datos del usuario autenticado")
-    public ResponseEntity<UsuarioResponseDTO> obtenerUsuarioActual(@RequestHeader("Authorization") String authHeader) {
-        String token = authHeader.substring(7); // Remover "Bearer "
-        String email = jwtUtil.extractUsername(token);
-        UsuarioResponseDTO usuario = usuarioService.obtenerPorEmail(email);
+    public ResponseEntity<UsuarioResponseDTO> obtenerUsuarioActual(@AuthenticationPrincipal UsuarioPrincipal principal) {
+        // /api/v1/auth/** es público: sin token (o con uno inválido) no hay principal
+        if (principal == null) {
+            throw new UnauthorizedException("Se requiere un token válido");
+        }
+        UsuarioResponseDTO usuario = usuarioService.obtenerPorEmail(principal.email());
         return ResponseEntity.ok(usuario);
     }
 }
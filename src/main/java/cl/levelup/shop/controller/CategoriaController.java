@@ -2,11 +2,14 @@ package cl.levelup.shop.controller;
 
 import cl.levelup.shop.dto.response.CategoriaResponseDTO;
 import cl.levelup.shop.service.CategoriaService;
+import cl.levelup.shop.service.VersionCatalogo;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -21,13 +24,29 @@ public class CategoriaController {
     
     @GetMapping
     @Operation(summary = "Listar todas las categorías", description = "Obtiene el listado completo de categorías disponibles")
-    public ResponseEntity<List<CategoriaResponseDTO>> listarTodas() {
-        return ResponseEntity.ok(categoriaService.obtenerTodas());
+    public ResponseEntity<List<CategoriaResponseDTO>> listarTodas(WebRequest webRequest) {
+        if (noModificado(webRequest)) {
+            return null;
+        }
+        return vigente(categoriaService.obtenerTodas());
     }
     
     @GetMapping("/{id}")
     @Operation(summary = "Obtener categoría por ID", description = "Obtiene los detalles de una categoría específica")
-    public ResponseEntity<CategoriaResponseDTO> obtenerPorId(@PathVariable String id) {
-        return ResponseEntity.ok(categoriaService.obtenerPorId(id));
+    public ResponseEntity<CategoriaResponseDTO> obtenerPorId(@PathVariable String id, WebRequest webRequest) {
+        if (noModificado(webRequest)) {
+            return null;
+        }
+        return vigente(categoriaService.obtenerPorId(id));
+    }
+    
+    // Las categorías comparten la versión del catálogo: CategoriaService también la avanza al escribir
+    private boolean noModificado(WebRequest webRequest) {
+        VersionCatalogo version = categoriaService.versionCatalogo();
+        return webRequest.checkNotModified(version.etag());
+    }
+    
+    private <T> ResponseEntity<T> vigente(T body) {
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(body);
     }
 }
@@ -3,14 +3,16 @@ package cl.levelup.shop.controller;
 import cl.levelup.shop.dto.TransbankCommitResponseDTO;
 import cl.levelup.shop.dto.TransbankInitRequestDTO;
 import cl.levelup.shop.dto.TransbankInitResponseDTO;
+import cl.levelup.shop.service.IdempotenciaStore;
 import cl.levelup.shop.service.TransbankService;
-import cl.levelup.shop.security.JwtUtil;
+import cl.levelup.shop.security.UsuarioPrincipal;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.bind.annotation.RequestMethod;
 
@@ -21,7 +23,7 @@ import org.springframework.web.bind.annotation.RequestMethod;
 public class PagoController {
     
     private final TransbankService transbankService;
-    private final JwtUtil jwtUtil;
+    private final IdempotenciaStore idempotenciaStore;
     
     @PostMapping("/iniciar")
     @Operation(
@@ -31,11 +33,11 @@ public class PagoController {
     )
     public ResponseEntity<TransbankInitResponseDTO> iniciarPago(
             @Valid @RequestBody TransbankInitRequestDTO request,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal UsuarioPrincipal usuario,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         
-        String token = authHeader.substring(7); // Remover "Bearer "
-        Long usuarioId = jwtUtil.extractUserId(token);
-        TransbankInitResponseDTO response = transbankService.iniciarTransaccion(request.pedidoId(), usuarioId);
+        TransbankInitResponseDTO response = idempotenciaStore.ejecutar("pagos-iniciar", usuario.id(), idempotencyKey, request,
+                () -> transbankService.iniciarTransaccion(request.pedidoId(), usuario.id()));
         return ResponseEntity.ok(response);
     }
     
@@ -1,7 +1,8 @@
 package cl.levelup.shop.controller;
 
 import cl.levelup.shop.dto.response.PedidoResponseDTO;
-import cl.levelup.shop.security.JwtUtil;
+import cl.levelup.shop.security.UsuarioPrincipal;
+import cl.levelup.shop.service.IdempotenciaStore;
 import cl.levelup.shop.service.PedidoService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -9,6 +10,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -23,17 +25,12 @@ import java.util.Map;
 public class PedidoController {
     
     private final PedidoService pedidoService;
-    private final JwtUtil jwtUtil;
-    
-    private Long obtenerUsuarioIdDelToken(String authHeader) {
-        String token = authHeader.substring(7);
-        return jwtUtil.extractUserId(token);
-    }
+    private final IdempotenciaStore idempotenciaStore;
     
     @GetMapping
     @Operation(summary = "Listar pedidos del usuario", description = "Obtiene el historial de pedidos del usuario autenticado")
-    public ResponseEntity<List<PedidoResponseDTO>> listarPedidos(@RequestHeader("Authorization") String authHeader) {
-        Long usuarioId = obtenerUsuarioIdDelToken(authHeader);
+    public ResponseEntity<List<PedidoResponseDTO>> listarPedidos(@AuthenticationPrincipal UsuarioPrincipal usuario) {
+        Long usuarioId = usuario.id();
         return ResponseEntity.ok(pedidoService.obtenerPorUsuario(usuarioId));
     }
     
@@ -45,8 +42,10 @@ public class PedidoController {
     
     @PostMapping
     @Operation(summary = "Crear pedido desde carrito", description = "Convierte el carrito activo en un pedido")
-    public ResponseEntity<PedidoResponseDTO> crearPedido(@RequestHeader("Authorization") String authHeader, @RequestBody Map<String, String> request) {
-        Long usuarioId = obtenerUsuarioIdDelToken(authHeader);
+    public ResponseEntity<PedidoResponseDTO> crearPedido(@AuthenticationPrincipal UsuarioPrincipal usuario,
+                                                         @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                                         @RequestBody Map<String, String> request) {
+        Long usuarioId = usuario.id();
         String direccionEnvio = request.get("direccionEnvio");
         if (direccionEnvio == null) {
             direccionEnvio = request.get("direccion_envio");
@@ -56,7 +55,9 @@ public class PedidoController {
             throw new cl.levelup.shop.exception.BadRequestException("La dirección de envío es requerida");
         }
         
-        PedidoResponseDTO pedido = pedidoService.crearDesdeCarrito(usuarioId, direccionEnvio);
+        String direccion = direccionEnvio;
+        PedidoResponseDTO pedido = idempotenciaStore.ejecutar("pedidos", usuarioId, idempotencyKey, request,
+                () -> pedidoService.crearDesdeCarrito(usuarioId, direccion));
         return ResponseEntity.status(HttpStatus.CREATED).body(pedido);
     }
 }
@@ -1,15 +1,32 @@
 package cl.levelup.shop.controller;
 
+import cl.levelup.shop.dto.response.FiltroProductosResponseDTO;
+import cl.levelup.shop.dto.response.PaginaResponseDTO;
 import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import cl.levelup.shop.dto.response.SugerenciaDTO;
+import cl.levelup.shop.service.FiltroFacetas;
 import cl.levelup.shop.service.ProductoService;
+import cl.levelup.shop.service.RespuestaSerializada;
+import cl.levelup.shop.service.VersionCatalogo;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/v1/productos")
@@ -22,36 +39,169 @@ public class ProductoController {
     
     @GetMapping
     @Operation(summary = "Listar productos", description = "Obtiene el listado de productos activos con filtros opcionales")
-    public ResponseEntity<List<ProductoResponseDTO>> listarProductos(
+    @ApiResponse(responseCode = "200", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+            array = @ArraySchema(schema = @Schema(implementation = ProductoResponseDTO.class))))
+    public ResponseEntity<byte[]> listarProductos(
             @Parameter(description = "ID de categoría para filtrar") @RequestParam(required = false) String categoria,
-            @Parameter(description = "Palabra clave para búsqueda") @RequestParam(required = false) String search
+            @Parameter(description = "Palabra clave para búsqueda") @RequestParam(required = false) String search,
+            WebRequest webRequest
     ) {
-        if (search != null && !search.trim().isEmpty()) {
-            return ResponseEntity.ok(productoService.buscar(search));
+        // Las búsquedas no se precalculan, así que siempre van sin comprimir
+        boolean busqueda = search != null && !search.trim().isEmpty();
+        if (busqueda) {
+            if (noModificado(webRequest)) {
+                return null;
+            }
+            return serializada(productoService.buscarSerializados(search), false);
+        }
+        
+        boolean gzip = aceptaGzip(webRequest);
+        if (noModificado(webRequest, gzip)) {
+            return null;
         }
         
         if (categoria != null && !categoria.trim().isEmpty()) {
-            return ResponseEntity.ok(productoService.obtenerPorCategoria(categoria));
+            return serializada(productoService.obtenerPorCategoriaSerializados(categoria), gzip);
         }
         
-        return ResponseEntity.ok(productoService.obtenerActivos());
+        return serializada(productoService.obtenerActivosSerializados(), gzip);
+    }
+    
+    @GetMapping("/pagina")
+    @Operation(summary = "Listar productos paginados", description = "Paginación por cursor: enviar el siguienteCursor de la respuesta anterior para obtener la página siguiente")
+    public ResponseEntity<PaginaResponseDTO<ProductoResponseDTO>> listarPagina(
+            @Parameter(description = "ID del último producto recibido") @RequestParam(required = false) Long cursor,
+            @Parameter(description = "Tamaño de página") @RequestParam(required = false) Integer size,
+            WebRequest webRequest
+    ) {
+        if (noModificado(webRequest)) {
+            return null;
+        }
+        return vigente(productoService.obtenerPagina(cursor, size));
+    }
+    
+    @GetMapping("/sugerencias")
+    @Operation(summary = "Autocompletar productos", description = "Sugiere productos cuyo nombre, código o marca empieza con el texto ingresado, ordenados por unidades vendidas")
+    public ResponseEntity<List<SugerenciaDTO>> sugerir(
+            @Parameter(description = "Texto ingresado") @RequestParam String q,
+            @Parameter(description = "Máximo de sugerencias") @RequestParam(required = false) Integer limite,
+            WebRequest webRequest
+    ) {
+        if (noModificado(webRequest)) {
+            return null;
+        }
+        return vigente(productoService.sugerir(q, limite));
+    }
+    
+    @GetMapping("/filtrar")
+    @Operation(summary = "Filtrar productos por facetas", description = "Filtra los productos activos por categoría, marca, rango de precio, rating mínimo y stock, y retorna los conteos de cada faceta")
+    public ResponseEntity<FiltroProductosResponseDTO> filtrar(
+            @Parameter(description = "IDs de categoría (se combinan con OR)") @RequestParam(required = false) Set<String> categoria,
+            @Parameter(description = "Marcas (se combinan con OR)") @RequestParam(required = false) Set<String> marca,
+            @Parameter(description = "Rangos de precio: 0-20000, 20000-50000, 50000-100000, 100000-300000, 300000+") @RequestParam(required = false) Set<String> precio,
+            @Parameter(description = "Rating mínimo") @RequestParam(required = false) Integer ratingMinimo,
+            @Parameter(description = "Solo productos con stock") @RequestParam(required = false) Boolean enStock,
+            WebRequest webRequest
+    ) {
+        if (noModificado(webRequest)) {
+            return null;
+        }
+        FiltroFacetas filtro = new FiltroFacetas(categoria, marca, precio, ratingMinimo, enStock);
+        return vigente(productoService.filtrar(filtro));
+    }
+    
+    @GetMapping(value = "/exportar", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Exportar catálogo", description = "Exporta los productos activos como NDJSON (un producto por línea) sin cargar el catálogo completo en memoria")
+    public ResponseEntity<StreamingResponseBody> exportar() {
+        StreamingResponseBody body = productoService::exportarActivos;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
     
     @GetMapping("/{id}")
     @Operation(summary = "Obtener producto por ID", description = "Obtiene los detalles de un producto específico")
-    public ResponseEntity<ProductoResponseDTO> obtenerPorId(@PathVariable Long id) {
-        return ResponseEntity.ok(productoService.obtenerPorId(id));
+    public ResponseEntity<ProductoResponseDTO> obtenerPorId(@PathVariable Long id, WebRequest webRequest) {
+        if (noModificado(webRequest)) {
+            return null;
+        }
+        return vigente(productoService.obtenerPorId(id));
     }
     
     @GetMapping("/codigo/{code}")
     @Operation(summary = "Obtener producto por código", description = "Obtiene un producto usando su código único (ej: JM001)")
-    public ResponseEntity<ProductoResponseDTO> obtenerPorCodigo(@PathVariable String code) {
-        return ResponseEntity.ok(productoService.obtenerPorCode(code));
+    public ResponseEntity<ProductoResponseDTO> obtenerPorCodigo(@PathVariable String code, WebRequest webRequest) {
+        if (noModificado(webRequest)) {
+            return null;
+        }
+        return vigente(productoService.obtenerPorCode(code));
     }
     
     @GetMapping("/categoria/{categoriaCode}")
     @Operation(summary = "Obtener productos por categoría", description = "Filtra productos por código de categoría (AC, CG, CO, JM, MP, MS, PP, SG)")
-    public ResponseEntity<List<ProductoResponseDTO>> obtenerPorCategoria(@PathVariable String categoriaCode) {
-        return ResponseEntity.ok(productoService.obtenerPorCategoria(categoriaCode));
+    @ApiResponse(responseCode = "200", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+            array = @ArraySchema(schema = @Schema(implementation = ProductoResponseDTO.class))))
+    public ResponseEntity<byte[]> obtenerPorCategoria(@PathVariable String categoriaCode, WebRequest webRequest) {
+        boolean gzip = aceptaGzip(webRequest);
+        if (noModificado(webRequest, gzip)) {
+            return null;
+        }
+        return serializada(productoService.obtenerPorCategoriaSerializados(categoriaCode), gzip);
+    }
+    
+    // Responde 304 con solo comparar la versión del catálogo, antes de cargarlo o serializar nada.
+    // checkNotModified también agrega el ETag a la respuesta 200. No se usa Last-Modified: tiene resolución
+    // de segundos y dos versiones dentro del mismo segundo darían un 304 con datos viejos
+    private boolean noModificado(WebRequest webRequest) {
+        return noModificado(webRequest, productoService.versionCatalogo(), false);
+    }
+    
+    // Listados pre-serializados: su ETag es el de los bytes guardados, que se renuevan con las ventas
+    // solo cada catalogo.stock.publicacion-ms
+    private boolean noModificado(WebRequest webRequest, boolean gzip) {
+        // El 304 también debe declarar que la representación depende de Accept-Encoding,
+        // o un caché intermedio podría reutilizarlo para un cliente con otra codificación
+        if (webRequest instanceof ServletWebRequest servletWebRequest && servletWebRequest.getResponse() != null) {
+            servletWebRequest.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        return noModificado(webRequest, productoService.versionListados(), gzip);
+    }
+    
+    private boolean noModificado(WebRequest webRequest, VersionCatalogo version, boolean gzip) {
+        String etag = gzip ? version.etag("gzip") : version.etag();
+        return webRequest.checkNotModified(etag);
+    }
+    
+    // Los bytes ya vienen serializados (y comprimidos) desde el caché del catálogo: no pasan por Jackson.
+    // Tomcat no vuelve a comprimir una respuesta que ya trae Content-Encoding
+    private ResponseEntity<byte[]> serializada(RespuestaSerializada respuesta, boolean gzip) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip && respuesta.gzip() != null) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(respuesta.gzip());
+        }
+        return builder.body(respuesta.json());
+    }
+    
+    private boolean aceptaGzip(WebRequest webRequest) {
+        String aceptadas = webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (aceptadas == null) {
+            return false;
+        }
+        for (String aceptada : aceptadas.split(",")) {
+            String[] partes = aceptada.split(";");
+            if (partes[0].trim().equalsIgnoreCase("gzip")) {
+                // "gzip;q=0" significa que el cliente lo rechaza explícitamente
+                return partes.length < 2 || !partes[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+    
+    // no-cache: el cliente puede guardar la respuesta pero debe revalidarla con If-None-Match en cada uso
+    private <T> ResponseEntity<T> vigente(T body) {
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(body);
     }
 }
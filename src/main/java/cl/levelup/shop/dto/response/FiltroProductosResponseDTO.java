@@ -0,0 +1,11 @@
+package cl.levelup.shop.dto.response;
+
+import java.util.List;
+import java.util.Map;
+
+public record FiltroProductosResponseDTO(
+        List<ProductoResponseDTO> items,
+        Integer total,
+        Map<String, List<ValorFacetaDTO>> facetas
+) {
+}
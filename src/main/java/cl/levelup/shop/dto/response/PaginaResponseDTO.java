@@ -0,0 +1,10 @@
+package cl.levelup.shop.dto.response;
+
+import java.util.List;
+
+public record PaginaResponseDTO<T>(
+        List<T> items,
+        Long siguienteCursor,
+        Boolean tieneMas
+) {
+}
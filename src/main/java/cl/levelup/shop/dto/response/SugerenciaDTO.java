@@ -0,0 +1,9 @@
+package cl.levelup.shop.dto.response;
+
+public record SugerenciaDTO(
+        Long id,
+        String code,
+        String nombre,
+        String marca
+) {
+}
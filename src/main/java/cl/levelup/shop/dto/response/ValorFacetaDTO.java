@@ -0,0 +1,8 @@
+package cl.levelup.shop.dto.response;
+
+public record ValorFacetaDTO(
+        String valor,
+        String etiqueta,
+        Integer cantidad
+) {
+}
@@ -21,7 +21,8 @@ import java.util.List;
 public class Carrito {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "carritos_seq")
+    @SequenceGenerator(name = "carritos_seq", sequenceName = "carritos_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
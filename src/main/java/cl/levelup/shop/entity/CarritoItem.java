@@ -18,7 +18,8 @@ import java.math.BigDecimal;
 public class CarritoItem {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "carrito_items_seq")
+    @SequenceGenerator(name = "carrito_items_seq", sequenceName = "carrito_items_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -26,7 +27,7 @@ public class CarritoItem {
     @JsonBackReference
     private Carrito carrito;
     
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "producto_id", nullable = false)
     private Producto producto;
     
@@ -14,7 +14,12 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "pedidos")
+@Table(name = "pedidos", indexes = {
+        @Index(name = "uk_pedidos_transbank_token", columnList = "transbank_token", unique = true),
+        @Index(name = "uk_pedidos_transbank_buy_order", columnList = "transbank_buy_order", unique = true),
+        @Index(name = "idx_pedidos_estado_id", columnList = "estado, id")
+})
+@NamedEntityGraph(name = "Pedido.conUsuario", attributeNodes = @NamedAttributeNode("usuario"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -22,7 +27,8 @@ import java.util.List;
 public class Pedido {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pedidos_seq")
+    @SequenceGenerator(name = "pedidos_seq", sequenceName = "pedidos_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
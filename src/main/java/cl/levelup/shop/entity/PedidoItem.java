@@ -18,7 +18,8 @@ import java.math.BigDecimal;
 public class PedidoItem {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pedido_items_seq")
+    @SequenceGenerator(name = "pedido_items_seq", sequenceName = "pedido_items_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -26,7 +27,7 @@ public class PedidoItem {
     @JsonBackReference
     private Pedido pedido;
     
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "producto_id", nullable = false)
     private Producto producto;
     
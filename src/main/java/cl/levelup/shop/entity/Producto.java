@@ -20,7 +20,8 @@ import java.util.List;
 public class Producto {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "productos_seq")
+    @SequenceGenerator(name = "productos_seq", sequenceName = "productos_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true, length = 20)
@@ -0,0 +1,19 @@
+package cl.levelup.shop.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+    
+    private final Long retryAfterSegundos;
+    
+    public ServiceUnavailableException(String message) {
+        this(message, null);
+    }
+    
+    public ServiceUnavailableException(String message, Long retryAfterSegundos) {
+        super(message);
+        this.retryAfterSegundos = retryAfterSegundos;
+    }
+    
+    public Long getRetryAfterSegundos() {
+        return retryAfterSegundos;
+    }
+}
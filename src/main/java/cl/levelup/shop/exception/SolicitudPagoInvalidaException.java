@@ -0,0 +1,9 @@
+package cl.levelup.shop.exception;
+
+// Transbank respondió, pero rechazó la solicitud (token inválido o desconocido, commit repetido,
+// transacción bloqueada): es un error del request, no una falla de la pasarela
+public class SolicitudPagoInvalidaException extends BadRequestException {
+    public SolicitudPagoInvalidaException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package cl.levelup.shop.exception;
+
+public class TooManyRequestsException extends RuntimeException {
+    
+    private final long retryAfterSegundos;
+    
+    public TooManyRequestsException(String message, long retryAfterSegundos) {
+        super(message);
+        this.retryAfterSegundos = retryAfterSegundos;
+    }
+    
+    public long getRetryAfterSegundos() {
+        return retryAfterSegundos;
+    }
+}
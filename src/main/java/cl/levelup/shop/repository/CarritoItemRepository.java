@@ -1,7 +1,10 @@
 package cl.levelup.shop.repository;
 
 import cl.levelup.shop.entity.CarritoItem;
+import cl.levelup.shop.repository.projection.CarritoItemResumen;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,4 +18,8 @@ public interface CarritoItemRepository extends JpaRepository<CarritoItem, Long>
     Optional<CarritoItem> findByCarritoIdAndProductoId(Long carritoId, Long productoId);
     
     void deleteByCarritoId(Long carritoId);
+    
+    @Query("SELECT new cl.levelup.shop.repository.projection.CarritoItemResumen(i.id, i.producto.id, i.cantidad, i.precioUnitario) " +
+           "FROM CarritoItem i WHERE i.carrito.id = :carritoId ORDER BY i.id")
+    List<CarritoItemResumen> findResumenByCarritoId(@Param("carritoId") Long carritoId);
 }
@@ -1,13 +1,29 @@
 package cl.levelup.shop.repository;
 
 import cl.levelup.shop.entity.PedidoItem;
+import cl.levelup.shop.repository.projection.PedidoItemVista;
+import cl.levelup.shop.repository.projection.VentasProducto;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface PedidoItemRepository extends JpaRepository<PedidoItem, Long> {
     
     List<PedidoItem> findByPedidoId(Long pedidoId);
+    
+    // Solo las columnas del producto que muestra el pedido: sin descripcion, specs ni tags (TEXT)
+    @Query("SELECT new cl.levelup.shop.repository.projection.PedidoItemVista(i.id, i.pedido.id, p.id, p.nombre, p.code, " +
+           "p.imagen, i.cantidad, i.precioUnitario, i.subtotal) " +
+           "FROM PedidoItem i JOIN i.producto p WHERE i.pedido.id IN :pedidoIds ORDER BY i.id")
+    List<PedidoItemVista> findVistaByPedidoIdIn(@Param("pedidoIds") Collection<Long> pedidoIds);
+    
+    @Query("SELECT new cl.levelup.shop.repository.projection.VentasProducto(i.producto.id, SUM(i.cantidad)) " +
+           "FROM PedidoItem i WHERE i.pedido.estado <> cl.levelup.shop.entity.enums.EstadoPedido.CANCELADO " +
+           "GROUP BY i.producto.id")
+    List<VentasProducto> sumarUnidadesVendidas();
 }
@@ -2,10 +2,20 @@ package cl.levelup.shop.repository;
 
 import cl.levelup.shop.entity.Pedido;
 import cl.levelup.shop.entity.enums.EstadoPedido;
+import cl.levelup.shop.repository.projection.PagoPendiente;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PedidoRepository extends JpaRepository<Pedido, Long> {
@@ -15,4 +25,48 @@ public interface PedidoRepository extends JpaRepository<Pedido, Long> {
     List<Pedido> findByUsuarioIdOrderByFechaPedidoDesc(Long usuarioId);
     
     List<Pedido> findByEstado(EstadoPedido estado);
+    
+    // Detalle de un pedido: el usuario viene en el mismo SELECT porque la respuesta muestra nombre y email
+    @EntityGraph("Pedido.conUsuario")
+    Optional<Pedido> findConUsuarioById(Long id);
+    
+    @Query("SELECT p FROM Pedido p JOIN FETCH p.usuario")
+    List<Pedido> findAllConUsuario();
+    
+    @Query("SELECT p FROM Pedido p JOIN FETCH p.usuario u WHERE u.id = :usuarioId ORDER BY p.fechaPedido DESC")
+    List<Pedido> findByUsuarioIdConUsuario(@Param("usuarioId") Long usuarioId);
+    
+    @Query("SELECT p FROM Pedido p JOIN FETCH p.usuario WHERE p.estado = :estado")
+    List<Pedido> findByEstadoConUsuario(@Param("estado") EstadoPedido estado);
+    
+    boolean existsByTransbankToken(String transbankToken);
+    
+    @Query("SELECT p.estado FROM Pedido p WHERE p.transbankToken = :token")
+    Optional<EstadoPedido> findEstadoByTransbankToken(@Param("token") String token);
+    
+    // Keyset por id: cada lote parte después del último id visto, sin OFFSET
+    @Query("SELECT new cl.levelup.shop.repository.projection.PagoPendiente(p.id, p.transbankToken, p.transbankBuyOrder, p.fechaPedido) " +
+           "FROM Pedido p WHERE p.estado = :estado AND p.transbankToken IS NOT NULL " +
+           "AND p.id > :desdeId AND p.fechaPedido < :antesDe ORDER BY p.id")
+    List<PagoPendiente> findPagosPendientes(@Param("estado") EstadoPedido estado, @Param("desdeId") Long desdeId,
+                                            @Param("antesDe") LocalDateTime antesDe, Pageable pageable);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Pedido p JOIN FETCH p.usuario WHERE p.id = :id")
+    Optional<Pedido> findByIdParaActualizar(@Param("id") Long id);
+    
+    // Solo se registra el token si ningún otro inicio de pago reemplazó la orden de compra entretanto
+    @Modifying
+    @Query("UPDATE Pedido p SET p.transbankToken = :token " +
+           "WHERE p.id = :id AND p.transbankBuyOrder = :buyOrder AND p.estado = :estado")
+    int registrarToken(@Param("id") Long id, @Param("buyOrder") String buyOrder,
+                       @Param("token") String token, @Param("estado") EstadoPedido estado);
+    
+    // Transición condicional: un pedido ya pagado o cancelado no se modifica
+    @Modifying
+    @Query("UPDATE Pedido p SET p.estado = :nuevoEstado, p.fechaPago = :fechaPago, p.codigoAutorizacion = :codigo " +
+           "WHERE p.transbankToken = :token AND p.estado = :estadoActual")
+    int registrarPago(@Param("token") String token, @Param("estadoActual") EstadoPedido estadoActual,
+                      @Param("nuevoEstado") EstadoPedido nuevoEstado, @Param("fechaPago") LocalDateTime fechaPago,
+                      @Param("codigo") String codigo);
 }
@@ -1,13 +1,23 @@
 package cl.levelup.shop.repository;
 
 import cl.levelup.shop.entity.Producto;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface ProductoRepository extends JpaRepository<Producto, Long> {
@@ -18,6 +28,17 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
     
     List<Producto> findByActivoTrue();
     
+    @Query("SELECT p FROM Producto p JOIN FETCH p.categoria ORDER BY p.id")
+    List<Producto> findAllConCategoria();
+    
+    // Cursor JDBC: el driver trae las filas por bloques en vez de materializar todo el resultado
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Producto p JOIN FETCH p.categoria WHERE p.activo = true ORDER BY p.id")
+    Stream<Producto> streamActivos();
+    
     @Query("SELECT p FROM Producto p WHERE p.activo = true AND p.categoria.id = :categoriaId")
     List<Producto> findActivosByCategoriaId(@Param("categoriaId") String categoriaId);
     
@@ -26,4 +47,18 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
            "LOWER(p.descripcion) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
            "LOWER(p.marca) LIKE LOWER(CONCAT('%', :keyword, '%')))")
     List<Producto> buscarProductos(@Param("keyword") String keyword);
+    
+    // SELECT ... FOR UPDATE en orden de id: checkouts y devoluciones de stock bloquean en el mismo orden
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Producto p WHERE p.id IN :ids ORDER BY p.id")
+    List<Producto> findAllByIdParaActualizar(@Param("ids") Collection<Long> ids);
+    
+    // Actualización condicional: 0 filas afectadas significa que el stock no alcanza
+    @Modifying
+    @Query("UPDATE Producto p SET p.stock = p.stock + :cantidad WHERE p.id = :id AND p.stock + :cantidad >= 0")
+    int ajustarStock(@Param("id") Long id, @Param("cantidad") Integer cantidad);
+    
+    // Dentro de la misma transacción que ajustarStock: la fila sigue bloqueada y el valor es el definitivo
+    @Query("SELECT p.stock FROM Producto p WHERE p.id = :id")
+    Integer findStockById(@Param("id") Long id);
 }
@@ -2,8 +2,13 @@ package cl.levelup.shop.repository;
 
 import cl.levelup.shop.entity.Usuario;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -14,4 +19,14 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
     boolean existsByEmail(String email);
     
     Optional<Usuario> findByEmailAndActivoTrue(String email);
+    
+    @Query("SELECT u.id FROM Usuario u WHERE u.activo = false")
+    List<Long> findIdsInactivos();
+    
+    // Solo reemplaza el hash si nadie cambió la contraseña mientras se calculaba el nuevo
+    @Transactional
+    @Modifying
+    @Query("UPDATE Usuario u SET u.password = :nuevoHash WHERE u.id = :id AND u.password = :hashAnterior")
+    int actualizarPassword(@Param("id") Long id, @Param("hashAnterior") String hashAnterior,
+                           @Param("nuevoHash") String nuevoHash);
 }
@@ -0,0 +1,11 @@
+package cl.levelup.shop.repository.projection;
+
+import java.math.BigDecimal;
+
+public record CarritoItemResumen(
+        Long id,
+        Long productoId,
+        Integer cantidad,
+        BigDecimal precioUnitario
+) {
+}
@@ -0,0 +1,11 @@
+package cl.levelup.shop.repository.projection;
+
+import java.time.LocalDateTime;
+
+public record PagoPendiente(
+        Long id,
+        String transbankToken,
+        String transbankBuyOrder,
+        LocalDateTime fechaPedido
+) {
+}
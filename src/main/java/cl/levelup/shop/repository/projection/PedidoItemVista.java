@@ -0,0 +1,16 @@
+package cl.levelup.shop.repository.projection;
+
+import java.math.BigDecimal;
+
+public record PedidoItemVista(
+        Long id,
+        Long pedidoId,
+        Long productoId,
+        String productoNombre,
+        String productoCode,
+        String productoImagen,
+        Integer cantidad,
+        BigDecimal precioUnitario,
+        BigDecimal subtotal
+) {
+}
@@ -0,0 +1,7 @@
+package cl.levelup.shop.repository.projection;
+
+public record VentasProducto(
+        Long productoId,
+        Long unidades
+) {
+}
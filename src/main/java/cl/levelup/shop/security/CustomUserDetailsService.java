@@ -29,4 +29,10 @@ public class CustomUserDetailsService implements UserDetailsService {
                 .authorities(Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + usuario.getRol().name())))
                 .build();
     }
+    
+    public UsuarioPrincipal loadPrincipalByUsername(String email) throws UsernameNotFoundException {
+        Usuario usuario = usuarioRepository.findByEmailAndActivoTrue(email)
+                .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + email));
+        return new UsuarioPrincipal(usuario.getId(), usuario.getEmail(), usuario.getRol());
+    }
 }
@@ -1,14 +1,15 @@
 package cl.levelup.shop.security;
 
+import cl.levelup.shop.entity.enums.Rol;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -20,7 +21,11 @@ import java.io.IOException;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
     private final JwtUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
+    private final CustomUserDetailsService userDetailsService;
+    private final RevocacionUsuarios revocacionUsuarios;
+    
+    @Value("${jwt.principal-sin-bd}")
+    private boolean principalSinBd;
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -35,16 +40,22 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         try {
             final String jwt = authHeader.substring(7);
-            final String userEmail = jwtUtil.extractUsername(jwt);
+            // Una sola verificación por request: el resto del filtro trabaja sobre estos claims
+            final Claims claims = jwtUtil.extractAllClaims(jwt);
+            final String userEmail = claims.getSubject();
+            final Long userId = claims.get("userId", Long.class);
             
-            if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = userDetailsService.loadUserByUsername(userEmail);
+            if (userEmail != null && userId != null && SecurityContextHolder.getContext().getAuthentication() == null
+                    && !revocacionUsuarios.estaRevocado(userId, claims.getIssuedAt())) {
+                UsuarioPrincipal principal = principalSinBd
+                        ? new UsuarioPrincipal(userId, userEmail, Rol.valueOf(claims.get("rol", String.class)))
+                        : userDetailsService.loadPrincipalByUsername(userEmail);
                 
-                if (jwtUtil.validateToken(jwt, userDetails.getUsername())) {
+                if (jwtUtil.validateClaims(claims, principal.email())) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
+                            principal,
                             null,
-                            userDetails.getAuthorities()
+                            principal.authorities()
                     );
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authToken);
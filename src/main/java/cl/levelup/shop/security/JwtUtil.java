@@ -1,8 +1,11 @@
 package cl.levelup.shop.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -14,16 +17,27 @@ import java.util.Map;
 import java.util.function.Function;
 
 @Component
+@RequiredArgsConstructor
 public class JwtUtil {
     
+    private final TokenVerificadoCache tokenVerificadoCache;
+    
     @Value("${jwt.secret}")
     private String secret;
     
     @Value("${jwt.expiration}")
     private Long expiration;
     
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    private SecretKey signingKey;
+    private JwtParser parser;
+    
+    @PostConstruct
+    void init() {
+        // La clave y el parser son inmutables y thread-safe: se construyen una sola vez
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
     }
     
     public String extractUsername(String token) {
@@ -47,16 +61,12 @@ public class JwtUtil {
         return claimsResolver.apply(claims);
     }
     
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    public Claims extractAllClaims(String token) {
+        return tokenVerificadoCache.obtener(token, this::verificar);
     }
     
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private Claims verificar(String token) {
+        return parser.parseSignedClaims(token).getPayload();
     }
     
     public String generateToken(String email, Long userId, String rol) {
@@ -72,12 +82,15 @@ public class JwtUtil {
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
     
     public Boolean validateToken(String token, String email) {
-        final String username = extractUsername(token);
-        return (username.equals(email) && !isTokenExpired(token));
+        return validateClaims(extractAllClaims(token), email);
+    }
+    
+    public Boolean validateClaims(Claims claims, String email) {
+        return claims.getSubject().equals(email) && !claims.getExpiration().before(new Date());
     }
 }
@@ -0,0 +1,136 @@
+package cl.levelup.shop.security;
+
+import cl.levelup.shop.dto.response.ErrorResponseDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Límite de requests por usuario del JWT y por IP con una política por tipo de ruta: la búsqueda
+// recorre el índice en memoria por cada request y la exportación lee de la BD, así que ambas tienen
+// un límite más estricto que las lecturas
+@Component
+public class LimiteTasaFilter extends OncePerRequestFilter {
+    
+    private final ObjectMapper objectMapper;
+    private final boolean habilitado;
+    private final Politica busqueda;
+    private final Politica exportacion;
+    private final Politica escritura;
+    private final Politica lectura;
+    
+    public LimiteTasaFilter(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                            @Value("${limite-tasa.habilitado}") boolean habilitado,
+                            @Value("${limite-tasa.max-claves}") int maxClaves,
+                            @Value("${limite-tasa.busqueda.capacidad}") int capacidadBusqueda,
+                            @Value("${limite-tasa.busqueda.por-minuto}") int porMinutoBusqueda,
+                            @Value("${limite-tasa.exportacion.capacidad}") int capacidadExportacion,
+                            @Value("${limite-tasa.exportacion.por-minuto}") int porMinutoExportacion,
+                            @Value("${limite-tasa.escritura.capacidad}") int capacidadEscritura,
+                            @Value("${limite-tasa.escritura.por-minuto}") int porMinutoEscritura,
+                            @Value("${limite-tasa.lectura.capacidad}") int capacidadLectura,
+                            @Value("${limite-tasa.lectura.por-minuto}") int porMinutoLectura) {
+        this.objectMapper = objectMapper;
+        this.habilitado = habilitado;
+        this.busqueda = new Politica("busqueda", capacidadBusqueda, porMinutoBusqueda, maxClaves, meterRegistry);
+        this.exportacion = new Politica("exportacion", capacidadExportacion, porMinutoExportacion, maxClaves, meterRegistry);
+        this.escritura = new Politica("escritura", capacidadEscritura, porMinutoEscritura, maxClaves, meterRegistry);
+        this.lectura = new Politica("lectura", capacidadLectura, porMinutoLectura, maxClaves, meterRegistry);
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Swagger, actuator y preflight CORS quedan fuera; el login ya tiene sus propios límites
+        return !habilitado
+                || HttpMethod.OPTIONS.matches(request.getMethod())
+                || !request.getRequestURI().startsWith("/api/v1/")
+                || request.getRequestURI().equals("/api/v1/auth/login");
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        
+        Politica politica = resolver(request);
+        String claveUsuario = null;
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof UsuarioPrincipal principal) {
+            claveUsuario = "u:" + principal.id();
+        }
+        
+        // Se consumen ambos límites: un usuario no se salta el de su IP y muchas cuentas
+        // desde una misma IP no multiplican su cupo
+        long esperaMs = claveUsuario != null ? politica.buckets.consumir(claveUsuario) : 0;
+        if (esperaMs > 0) {
+            politica.rechazosUsuario.increment();
+        } else {
+            esperaMs = politica.buckets.consumir("ip:" + request.getRemoteAddr());
+            if (esperaMs == 0) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            politica.rechazosIp.increment();
+            if (claveUsuario != null) {
+                politica.buckets.devolver(claveUsuario);
+            }
+        }
+        
+        long retryAfter = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(esperaMs + 999));
+        
+        ErrorResponseDTO error = ErrorResponseDTO.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                .error("Too Many Requests")
+                .message("Demasiadas solicitudes, intenta nuevamente en " + retryAfter + " segundos")
+                .path(request.getRequestURI())
+                .build();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getOutputStream(), error);
+    }
+    
+    private Politica resolver(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        if (!HttpMethod.GET.matches(request.getMethod())) {
+            return escritura;
+        }
+        if (uri.equals("/api/v1/productos/exportar")) {
+            return exportacion;
+        }
+        if (uri.equals("/api/v1/productos") && request.getParameter("search") != null) {
+            return busqueda;
+        }
+        return lectura;
+    }
+    
+    private static final class Politica {
+        
+        private final TokenBuckets buckets;
+        private final Counter rechazosUsuario;
+        private final Counter rechazosIp;
+        
+        private Politica(String nombre, int capacidad, int porMinuto, int maxClaves, MeterRegistry meterRegistry) {
+            this.buckets = new TokenBuckets(capacidad, porMinuto, maxClaves);
+            this.rechazosUsuario = meterRegistry.counter("api.limite.rechazos", "politica", nombre, "cliente", "usuario");
+            this.rechazosIp = meterRegistry.counter("api.limite.rechazos", "politica", nombre, "cliente", "ip");
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package cl.levelup.shop.security;
+
+import cl.levelup.shop.exception.TooManyRequestsException;
+import cl.levelup.shop.exception.UnauthorizedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// BCrypt corre en un pool propio y acotado: una ráfaga de logins (o credential stuffing) llena
+// la cola y recibe 429 en vez de ocupar todos los núcleos que atienden el resto de la API
+@Component
+public class ProteccionLogin {
+    
+    private final PasswordEncoder passwordEncoder;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+    private final TokenBuckets porIp;
+    private final TokenBuckets porEmail;
+    
+    public ProteccionLogin(PasswordEncoder passwordEncoder, MeterRegistry meterRegistry,
+                           @Value("${login.bcrypt.hilos}") int hilos,
+                           @Value("${login.bcrypt.cola}") int cola,
+                           @Value("${login.limite.ip.capacidad}") int capacidadIp,
+                           @Value("${login.limite.ip.por-minuto}") int porMinutoIp,
+                           @Value("${login.limite.email.capacidad}") int capacidadEmail,
+                           @Value("${login.limite.email.por-minuto}") int porMinutoEmail,
+                           @Value("${login.limite.max-claves}") int maxClaves) {
+        this.passwordEncoder = passwordEncoder;
+        this.meterRegistry = meterRegistry;
+        this.executor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(cola), new CustomizableThreadFactory("bcrypt-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.porIp = new TokenBuckets(capacidadIp, porMinutoIp, maxClaves);
+        this.porEmail = new TokenBuckets(capacidadEmail, porMinutoEmail, maxClaves);
+        
+        meterRegistry.gauge("login.bcrypt.cola", executor, e -> e.getQueue().size());
+        meterRegistry.gauge("login.bcrypt.activos", executor, ThreadPoolExecutor::getActiveCount);
+    }
+    
+    // Se revisa antes de consultar la BD y de ejecutar BCrypt, que es lo caro del login
+    public void verificarLimites(String ip, String email) {
+        long esperaIp = porIp.consumir(ip);
+        if (esperaIp > 0) {
+            throw new TooManyRequestsException("Demasiados intentos de inicio de sesión", segundos(esperaIp));
+        }
+        long esperaEmail = porEmail.consumir(email.trim().toLowerCase(Locale.ROOT));
+        if (esperaEmail > 0) {
+            throw new TooManyRequestsException("Demasiados intentos de inicio de sesión", segundos(esperaEmail));
+        }
+    }
+    
+    public boolean verificarPassword(String password, String hash) {
+        return ejecutar(() -> passwordEncoder.matches(password, hash));
+    }
+    
+    public String codificar(String password) {
+        return ejecutar(() -> passwordEncoder.encode(password));
+    }
+    
+    public boolean requiereRehash(String hash) {
+        return passwordEncoder.upgradeEncoding(hash);
+    }
+    
+    // Tiempo total del login (límites, BD, cola y BCrypt) separado por resultado para dimensionar capacidad
+    public <T> T medir(Supplier<T> login) {
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        String resultado = "error";
+        try {
+            T respuesta = login.get();
+            resultado = "ok";
+            return respuesta;
+        } catch (UnauthorizedException e) {
+            resultado = "rechazado";
+            throw e;
+        } catch (TooManyRequestsException e) {
+            resultado = "limitado";
+            throw e;
+        } finally {
+            muestra.stop(meterRegistry.timer("login.duracion", "resultado", resultado));
+        }
+    }
+    
+    private <T> T ejecutar(Callable<T> tarea) {
+        Future<T> futuro;
+        try {
+            futuro = executor.submit(tarea);
+        } catch (RejectedExecutionException e) {
+            throw new TooManyRequestsException("Demasiados inicios de sesión en curso, intenta nuevamente", 1);
+        }
+        
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            futuro.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Verificación de contraseña interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException("Error al verificar la contraseña", e.getCause());
+        }
+    }
+    
+    private long segundos(long esperaMs) {
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(esperaMs + 999));
+    }
+    
+    @PreDestroy
+    public void cerrar() {
+        executor.shutdown();
+    }
+}
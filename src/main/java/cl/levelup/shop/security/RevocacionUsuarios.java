@@ -0,0 +1,49 @@
+package cl.levelup.shop.security;
+
+import cl.levelup.shop.repository.UsuarioRepository;
+import cl.levelup.shop.service.TransaccionUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+@RequiredArgsConstructor
+public class RevocacionUsuarios {
+    
+    private final UsuarioRepository usuarioRepository;
+    
+    @Value("${jwt.principal-sin-bd}")
+    private boolean principalSinBd;
+    
+    // id usuario -> milisegundo epoch desde el cual sus tokens anteriores dejan de ser válidos
+    private final Map<Long, Long> epocas = new ConcurrentHashMap<>();
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarInactivos() {
+        // Sin consulta por request, los usuarios desactivados antes del arranque se revocan aquí
+        if (principalSinBd) {
+            long ahora = Instant.now().toEpochMilli();
+            usuarioRepository.findIdsInactivos().forEach(id -> epocas.put(id, ahora));
+        }
+    }
+    
+    public void revocar(Long usuarioId) {
+        TransaccionUtil.despuesDelCommit(() -> epocas.put(usuarioId, Instant.now().toEpochMilli()));
+    }
+    
+    public boolean estaRevocado(Long usuarioId, Date emitidoEn) {
+        Long epoca = epocas.get(usuarioId);
+        if (epoca == null) {
+            return false;
+        }
+        // iat viaja truncado al segundo, así que un token emitido antes de la revocación siempre queda por debajo
+        return emitidoEn == null || emitidoEn.getTime() < epoca;
+    }
+}
@@ -0,0 +1,78 @@
+package cl.levelup.shop.security;
+
+import cl.levelup.shop.service.MapaAcotadoUtil;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Un token bucket por clave (IP, email, ...). Cada bucket se actualiza con CAS sobre un estado
+// inmutable, así que consumir nunca bloquea aunque muchos hilos compitan por la misma clave
+public class TokenBuckets {
+    
+    private final double capacidad;
+    private final double tokensPorNano;
+    private final int maxClaves;
+    
+    private final Map<String, AtomicReference<Bucket>> buckets = new ConcurrentHashMap<>();
+    
+    public TokenBuckets(int capacidad, int recargaPorMinuto, int maxClaves) {
+        this.capacidad = capacidad;
+        this.tokensPorNano = recargaPorMinuto / (double) TimeUnit.MINUTES.toNanos(1);
+        this.maxClaves = maxClaves;
+    }
+    
+    // 0 si se consumió un token; si no, los milisegundos hasta que haya uno disponible
+    public long consumir(String clave) {
+        long ahora = System.nanoTime();
+        AtomicReference<Bucket> ref = buckets.get(clave);
+        if (ref == null) {
+            if (buckets.size() >= maxClaves) {
+                purgar(ahora);
+            }
+            ref = buckets.computeIfAbsent(clave, k -> new AtomicReference<>(new Bucket(capacidad, ahora)));
+        }
+        
+        while (true) {
+            Bucket actual = ref.get();
+            double tokens = disponibles(actual, ahora);
+            if (tokens < 1) {
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis((long) Math.ceil((1 - tokens) / tokensPorNano)));
+            }
+            if (ref.compareAndSet(actual, new Bucket(tokens - 1, Math.max(ahora, actual.ultimaRecarga())))) {
+                return 0;
+            }
+        }
+    }
+    
+    // Devuelve un token consumido cuando el request terminó rechazado por otro límite
+    public void devolver(String clave) {
+        AtomicReference<Bucket> ref = buckets.get(clave);
+        if (ref == null) {
+            return;
+        }
+        long ahora = System.nanoTime();
+        while (true) {
+            Bucket actual = ref.get();
+            double tokens = Math.min(capacidad, disponibles(actual, ahora) + 1);
+            if (ref.compareAndSet(actual, new Bucket(tokens, Math.max(ahora, actual.ultimaRecarga())))) {
+                return;
+            }
+        }
+    }
+    
+    private double disponibles(Bucket bucket, long ahora) {
+        long transcurrido = Math.max(0, ahora - bucket.ultimaRecarga());
+        return Math.min(capacidad, bucket.tokens() + transcurrido * tokensPorNano);
+    }
+    
+    private void purgar(long ahora) {
+        // Un bucket que ya se rellenó por completo equivale a uno nuevo y se puede olvidar
+        buckets.values().removeIf(ref -> disponibles(ref.get(), ahora) >= capacidad);
+        MapaAcotadoUtil.descartarExceso(buckets, maxClaves);
+    }
+    
+    private record Bucket(double tokens, long ultimaRecarga) {
+    }
+}
@@ -0,0 +1,61 @@
+package cl.levelup.shop.security;
+
+import cl.levelup.shop.service.MapaAcotadoUtil;
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+@Component
+public class TokenVerificadoCache {
+    
+    @Value("${jwt.cache.max-entradas}")
+    private int maxEntradas;
+    
+    // digest SHA-256 del token -> claims ya verificados (no se guardan los tokens en claro)
+    private final Map<String, Claims> verificados = new ConcurrentHashMap<>();
+    
+    public Claims obtener(String token, Function<String, Claims> verificador) {
+        String clave = digest(token);
+        Claims claims = verificados.get(clave);
+        if (claims != null) {
+            if (claims.getExpiration() != null && claims.getExpiration().after(new Date())) {
+                return claims;
+            }
+            verificados.remove(clave, claims);
+        }
+        
+        // Si la firma es inválida o el token expiró el verificador lanza y no se cachea nada
+        Claims nuevos = verificador.apply(token);
+        if (nuevos.getExpiration() != null) {
+            if (verificados.size() >= maxEntradas) {
+                purgar();
+            }
+            verificados.put(clave, nuevos);
+        }
+        return nuevos;
+    }
+    
+    private void purgar() {
+        Date ahora = new Date();
+        verificados.values().removeIf(claims -> !claims.getExpiration().after(ahora));
+        MapaAcotadoUtil.descartarExceso(verificados, maxEntradas);
+    }
+    
+    private String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package cl.levelup.shop.security;
+
+import cl.levelup.shop.entity.enums.Rol;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collections;
+import java.util.List;
+
+public record UsuarioPrincipal(
+        Long id,
+        String email,
+        Rol rol
+) {
+    
+    public List<GrantedAuthority> authorities() {
+        return Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + rol.name()));
+    }
+}
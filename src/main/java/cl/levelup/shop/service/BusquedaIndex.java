@@ -0,0 +1,175 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+@Component
+public class BusquedaIndex {
+
+    private static final int PESO_NOMBRE = 3;
+    private static final int PESO_MARCA = 2;
+    private static final int PESO_DESCRIPCION = 1;
+    private static final double BONO_TERMINO_EXACTO = 2.0;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // término -> (id producto -> peso acumulado en nombre, marca y descripción)
+    private final TreeMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, Set<String>> terminosPorProducto = new HashMap<>();
+    private volatile boolean cargado = false;
+
+    public void cargarSiEsNecesario(Supplier<Collection<ProductoResponseDTO>> activos) {
+        if (cargado) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (cargado) {
+                return;
+            }
+            postings.clear();
+            terminosPorProducto.clear();
+            for (ProductoResponseDTO producto : activos.get()) {
+                agregar(producto);
+            }
+            cargado = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void indexar(ProductoResponseDTO producto) {
+        // cargado se revisa con el lock tomado: si una carga está en curso se espera a que termine
+        // y el cambio se aplica encima, en vez de perderse por haber mirado el flag antes
+        lock.writeLock().lock();
+        try {
+            // Antes de la carga inicial no hay nada que mantener: la carga parte del catálogo vigente
+            if (!cargado) {
+                return;
+            }
+            quitar(producto.id());
+            if (Boolean.TRUE.equals(producto.activo())) {
+                agregar(producto);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remover(Long productoId) {
+        lock.writeLock().lock();
+        try {
+            if (!cargado) {
+                return;
+            }
+            quitar(productoId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Long> buscar(String consulta) {
+        Set<String> terminos = new LinkedHashSet<>(NormalizadorTexto.tokenizar(consulta));
+        if (terminos.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int totalProductos = Math.max(1, terminosPorProducto.size());
+            Map<Long, Double> resultado = null;
+
+            // AND entre términos: cada término debe coincidir exacto o como prefijo
+            for (String termino : terminos) {
+                Map<Long, Double> puntajes = puntuarTermino(termino, totalProductos);
+                if (resultado == null) {
+                    resultado = puntajes;
+                } else {
+                    resultado.keySet().retainAll(puntajes.keySet());
+                    for (Map.Entry<Long, Double> entrada : resultado.entrySet()) {
+                        entrada.setValue(entrada.getValue() + puntajes.get(entrada.getKey()));
+                    }
+                }
+                if (resultado.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            List<Map.Entry<Long, Double>> ordenados = new ArrayList<>(resultado.entrySet());
+            ordenados.sort(Map.Entry.<Long, Double>comparingByValue(Comparator.reverseOrder())
+                    .thenComparing(Map.Entry.<Long, Double>comparingByKey()));
+
+            List<Long> ids = new ArrayList<>(ordenados.size());
+            for (Map.Entry<Long, Double> entrada : ordenados) {
+                ids.add(entrada.getKey());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Long, Double> puntuarTermino(String termino, int totalProductos) {
+        Map<Long, Double> puntajes = new HashMap<>();
+        // Todos los términos que empiezan con el prefijo, sin tope: un prefijo corto recorre más del
+        // vocabulario pero no pierde productos que la consulta LIKE sí encontraría
+        SortedMap<String, Map<Long, Integer>> coincidencias = postings.subMap(termino, termino + Character.MAX_VALUE);
+        for (Map.Entry<String, Map<Long, Integer>> entrada : coincidencias.entrySet()) {
+            Map<Long, Integer> productos = entrada.getValue();
+            double idf = Math.log(1.0 + (double) totalProductos / productos.size());
+            double bono = entrada.getKey().equals(termino) ? BONO_TERMINO_EXACTO : 1.0;
+            for (Map.Entry<Long, Integer> posting : productos.entrySet()) {
+                puntajes.merge(posting.getKey(), posting.getValue() * idf * bono, Double::sum);
+            }
+        }
+        return puntajes;
+    }
+
+    private void agregar(ProductoResponseDTO producto) {
+        Map<String, Integer> pesos = new HashMap<>();
+        acumular(pesos, producto.nombre(), PESO_NOMBRE);
+        acumular(pesos, producto.marca(), PESO_MARCA);
+        acumular(pesos, producto.descripcion(), PESO_DESCRIPCION);
+
+        for (Map.Entry<String, Integer> entrada : pesos.entrySet()) {
+            postings.computeIfAbsent(entrada.getKey(), k -> new HashMap<>()).put(producto.id(), entrada.getValue());
+        }
+        terminosPorProducto.put(producto.id(), new HashSet<>(pesos.keySet()));
+    }
+
+    private void quitar(Long productoId) {
+        Set<String> terminos = terminosPorProducto.remove(productoId);
+        if (terminos == null) {
+            return;
+        }
+        for (String termino : terminos) {
+            Map<Long, Integer> productos = postings.get(termino);
+            if (productos != null) {
+                productos.remove(productoId);
+                if (productos.isEmpty()) {
+                    postings.remove(termino);
+                }
+            }
+        }
+    }
+
+    private void acumular(Map<String, Integer> pesos, String texto, int peso) {
+        for (String token : NormalizadorTexto.tokenizar(texto)) {
+            pesos.merge(token, peso, Integer::sum);
+        }
+    }
+}
@@ -3,18 +3,15 @@ package cl.levelup.shop.service;
 import cl.levelup.shop.dto.request.CarritoItemRequestDTO;
 import cl.levelup.shop.dto.response.CarritoItemResponseDTO;
 import cl.levelup.shop.dto.response.CarritoResponseDTO;
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
 import cl.levelup.shop.entity.Carrito;
-import cl.levelup.shop.entity.CarritoItem;
-import cl.levelup.shop.entity.Producto;
-import cl.levelup.shop.entity.Usuario;
 import cl.levelup.shop.entity.enums.EstadoCarrito;
 import cl.levelup.shop.exception.BadRequestException;
 import cl.levelup.shop.exception.InsufficientStockException;
 import cl.levelup.shop.exception.ResourceNotFoundException;
-import cl.levelup.shop.repository.CarritoItemRepository;
 import cl.levelup.shop.repository.CarritoRepository;
-import cl.levelup.shop.repository.ProductoRepository;
-import cl.levelup.shop.repository.UsuarioRepository;
+import cl.levelup.shop.service.CarritoStore.CarritoEnMemoria;
+import cl.levelup.shop.service.CarritoStore.ItemEnMemoria;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -28,101 +25,75 @@ import java.util.stream.Collectors;
 public class CarritoService {
     
     private final CarritoRepository carritoRepository;
-    private final CarritoItemRepository carritoItemRepository;
-    private final ProductoRepository productoRepository;
-    private final UsuarioRepository usuarioRepository;
+    private final CarritoStore carritoStore;
+    private final ProductoService productoService;
     
-    @Transactional(readOnly = true)
     public CarritoResponseDTO obtenerCarritoActivo(Long usuarioId) {
-        Carrito carrito = obtenerOCrearCarritoActivo(usuarioId);
-        return convertirAResponse(carrito);
+        return carritoStore.conCarrito(usuarioId, this::convertirAResponse);
     }
     
-    @Transactional
     public CarritoResponseDTO agregarProducto(Long usuarioId, CarritoItemRequestDTO request) {
-        Carrito carrito = obtenerOCrearCarritoActivo(usuarioId);
-        
-        Producto producto = productoRepository.findById(request.productoId())
-                .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado: " + request.productoId()));
+        ProductoResponseDTO producto = productoService.obtenerPorId(request.productoId());
         
-        if (!producto.getActivo()) {
+        if (!producto.activo()) {
             throw new BadRequestException("El producto no está disponible");
         }
         
-        if (producto.getStock() < request.cantidad()) {
-            throw new InsufficientStockException("Stock insuficiente. Disponible: " + producto.getStock());
+        if (producto.stock() < request.cantidad()) {
+            throw new InsufficientStockException("Stock insuficiente. Disponible: " + producto.stock());
         }
         
-        // Buscar si ya existe el producto en el carrito
-        CarritoItem itemExistente = carritoItemRepository
-                .findByCarritoIdAndProductoId(carrito.getId(), request.productoId())
-                .orElse(null);
-        
-        if (itemExistente != null) {
-            // Actualizar cantidad
-            int nuevaCantidad = itemExistente.getCantidad() + request.cantidad();
-            if (producto.getStock() < nuevaCantidad) {
-                throw new InsufficientStockException("Stock insuficiente. Disponible: " + producto.getStock());
+        return carritoStore.conCarrito(usuarioId, carrito -> {
+            // Buscar si ya existe el producto en el carrito
+            ItemEnMemoria itemExistente = carrito.buscarItemPorProducto(request.productoId());
+            
+            if (itemExistente != null) {
+                // Actualizar cantidad
+                int nuevaCantidad = itemExistente.getCantidad() + request.cantidad();
+                if (producto.stock() < nuevaCantidad) {
+                    throw new InsufficientStockException("Stock insuficiente. Disponible: " + producto.stock());
+                }
+                carrito.cambiarCantidad(itemExistente, nuevaCantidad);
+            } else {
+                // Crear nuevo item
+                Long itemId = carritoStore.insertarItem(carrito.getId(), producto.id(), request.cantidad(), producto.precio());
+                carrito.agregarItem(new ItemEnMemoria(itemId, producto.id(), request.cantidad(), producto.precio()));
             }
-            itemExistente.setCantidad(nuevaCantidad);
-            carritoItemRepository.save(itemExistente);
-        } else {
-            // Crear nuevo item
-            CarritoItem nuevoItem = CarritoItem.builder()
-                    .carrito(carrito)
-                    .producto(producto)
-                    .cantidad(request.cantidad())
-                    .precioUnitario(producto.getPrecio())
-                    .build();
-            carritoItemRepository.save(nuevoItem);
-        }
-        
-        return convertirAResponse(carrito);
+            
+            return convertirAResponse(carrito);
+        });
     }
     
-    @Transactional
     public CarritoResponseDTO actualizarCantidad(Long usuarioId, Long itemId, Integer cantidad) {
-        Carrito carrito = obtenerOCrearCarritoActivo(usuarioId);
-        
-        CarritoItem item = carritoItemRepository.findById(itemId)
-                .orElseThrow(() -> new ResourceNotFoundException("Item no encontrado: " + itemId));
-        
-        if (!item.getCarrito().getId().equals(carrito.getId())) {
-            throw new BadRequestException("El item no pertenece al carrito del usuario");
-        }
-        
-        if (cantidad <= 0) {
-            carritoItemRepository.delete(item);
-        } else {
-            if (item.getProducto().getStock() < cantidad) {
-                throw new InsufficientStockException("Stock insuficiente. Disponible: " + item.getProducto().getStock());
+        return carritoStore.conCarrito(usuarioId, carrito -> {
+            ItemEnMemoria item = buscarItem(carrito, itemId);
+            
+            if (cantidad <= 0) {
+                carrito.eliminarItem(item);
+            } else {
+                ProductoResponseDTO producto = productoService.obtenerPorId(item.getProductoId());
+                if (producto.stock() < cantidad) {
+                    throw new InsufficientStockException("Stock insuficiente. Disponible: " + producto.stock());
+                }
+                carrito.cambiarCantidad(item, cantidad);
             }
-            item.setCantidad(cantidad);
-            carritoItemRepository.save(item);
-        }
-        
-        return convertirAResponse(carrito);
+            
+            return convertirAResponse(carrito);
+        });
     }
     
-    @Transactional
     public CarritoResponseDTO eliminarItem(Long usuarioId, Long itemId) {
-        Carrito carrito = obtenerOCrearCarritoActivo(usuarioId);
-        
-        CarritoItem item = carritoItemRepository.findById(itemId)
-                .orElseThrow(() -> new ResourceNotFoundException("Item no encontrado: " + itemId));
-        
-        if (!item.getCarrito().getId().equals(carrito.getId())) {
-            throw new BadRequestException("El item no pertenece al carrito del usuario");
-        }
-        
-        carritoItemRepository.delete(item);
-        return convertirAResponse(carrito);
+        return carritoStore.conCarrito(usuarioId, carrito -> {
+            carrito.eliminarItem(buscarItem(carrito, itemId));
+            return convertirAResponse(carrito);
+        });
     }
     
-    @Transactional
     public void vaciarCarrito(Long usuarioId) {
-        Carrito carrito = obtenerOCrearCarritoActivo(usuarioId);
-        carritoItemRepository.deleteByCarritoId(carrito.getId());
+        carritoStore.conCarrito(usuarioId, carrito -> {
+            carrito.vaciar();
+            return null;
+        });
     }
     
     @Transactional
@@ -131,57 +102,54 @@ public class CarritoService {
                 .orElseThrow(() -> new RuntimeException("Carrito no encontrado: " + carritoId));
         carrito.setEstado(EstadoCarrito.COMPRADO);
         carritoRepository.save(carrito);
+        carritoStore.descartar(carrito.getUsuario().getId());
     }
     
-    private Carrito obtenerOCrearCarritoActivo(Long usuarioId) {
-        return carritoRepository.findByUsuarioIdAndEstado(usuarioId, EstadoCarrito.ACTIVO)
-                .orElseGet(() -> {
-                    Usuario usuario = usuarioRepository.findById(usuarioId)
-                            .orElseThrow(() -> new RuntimeException("Usuario no encontrado: " + usuarioId));
-                    
-                    Carrito nuevoCarrito = Carrito.builder()
-                            .usuario(usuario)
-                            .estado(EstadoCarrito.ACTIVO)
-                            .build();
-                    return carritoRepository.save(nuevoCarrito);
-                });
+    private ItemEnMemoria buscarItem(CarritoEnMemoria carrito, Long itemId) {
+        ItemEnMemoria item = carrito.buscarItem(itemId);
+        if (item == null) {
+            // Un item de otro carrito no está en la copia en memoria del usuario
+            throw new ResourceNotFoundException("Item no encontrado: " + itemId);
+        }
+        return item;
     }
     
-    private CarritoResponseDTO convertirAResponse(Carrito carrito) {
-        List<CarritoItem> items = carritoItemRepository.findByCarritoId(carrito.getId());
-        
-        List<CarritoItemResponseDTO> itemsDTO = items.stream()
+    // Visible en el paquete para los benchmarks de src/jmh
+    CarritoResponseDTO convertirAResponse(CarritoEnMemoria carrito) {
+        List<CarritoItemResponseDTO> itemsDTO = carrito.getItems().stream()
                 .map(this::convertirItemAResponse)
                 .collect(Collectors.toList());
         
-        BigDecimal total = items.stream()
-                .map(item -> item.getPrecioUnitario().multiply(BigDecimal.valueOf(item.getCantidad())))
+        BigDecimal total = itemsDTO.stream()
+                .map(CarritoItemResponseDTO::subtotal)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
         
-        int totalItems = items.stream()
-                .mapToInt(CarritoItem::getCantidad)
+        int totalItems = itemsDTO.stream()
+                .mapToInt(CarritoItemResponseDTO::cantidad)
                 .sum();
         
         return new CarritoResponseDTO(
                 carrito.getId(),
-                carrito.getUsuario().getId(),
+                carrito.getUsuarioId(),
                 carrito.getFechaCreacion(),
-                carrito.getEstado(),
+                EstadoCarrito.ACTIVO,
                 itemsDTO,
                 total,
                 totalItems
         );
     }
     
-    private CarritoItemResponseDTO convertirItemAResponse(CarritoItem item) {
+    private CarritoItemResponseDTO convertirItemAResponse(ItemEnMemoria item) {
         BigDecimal subtotal = item.getPrecioUnitario().multiply(BigDecimal.valueOf(item.getCantidad()));
+        // Nombre, código e imagen vienen del snapshot del catálogo, no de la BD
+        ProductoResponseDTO producto = productoService.obtenerPorId(item.getProductoId());
         
         return new CarritoItemResponseDTO(
                 item.getId(),
-                item.getProducto().getId(),
-                item.getProducto().getNombre(),
-                item.getProducto().getCode(),
-                item.getProducto().getImagen(),
+                item.getProductoId(),
+                producto.nombre(),
+                producto.code(),
+                producto.imagen(),
                 item.getCantidad(),
                 item.getPrecioUnitario(),
                 subtotal
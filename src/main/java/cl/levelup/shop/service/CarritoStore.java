@@ -0,0 +1,401 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.entity.Carrito;
+import cl.levelup.shop.entity.CarritoItem;
+import cl.levelup.shop.entity.Usuario;
+import cl.levelup.shop.entity.enums.EstadoCarrito;
+import cl.levelup.shop.repository.CarritoItemRepository;
+import cl.levelup.shop.repository.CarritoRepository;
+import cl.levelup.shop.repository.ProductoRepository;
+import cl.levelup.shop.repository.UsuarioRepository;
+import cl.levelup.shop.repository.projection.CarritoItemResumen;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Carritos activos en memoria: las lecturas y cambios de cantidad no tocan la BD y
+// se escriben en lote cada carrito.flush-intervalo-ms (o de inmediato al hacer checkout)
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CarritoStore {
+
+    private final CarritoRepository carritoRepository;
+    private final CarritoItemRepository carritoItemRepository;
+    private final ProductoRepository productoRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${carrito.inactividad-ms}")
+    private long inactividadMs;
+
+    private final Map<Long, CarritoEnMemoria> carritos = new ConcurrentHashMap<>();
+    // Cargas en curso por usuario: la transacción corre fuera del mapa de carritos, que no debe
+    // quedar bloqueado por una consulta a la BD
+    private final Map<Long, CompletableFuture<CarritoEnMemoria>> cargas = new ConcurrentHashMap<>();
+
+    public <T> T conCarrito(Long usuarioId, Function<CarritoEnMemoria, T> operacion) {
+        while (true) {
+            CarritoEnMemoria carrito = obtener(usuarioId);
+            synchronized (carrito) {
+                // Con un checkout en curso no se sabe aún si el carrito sigue activo: se espera su resultado
+                while (carrito.enCheckout) {
+                    esperarCheckout(carrito);
+                }
+                // Un carrito descartado (checkout o expulsión) se vuelve a cargar desde la BD
+                if (!carrito.descartado) {
+                    carrito.ultimoAcceso = System.currentTimeMillis();
+                    return operacion.apply(carrito);
+                }
+            }
+        }
+    }
+
+    public Long insertarItem(Long carritoId, Long productoId, Integer cantidad, BigDecimal precioUnitario) {
+        // Los items nuevos se insertan de inmediato porque el cliente necesita su id
+        return transactionTemplate.execute(status -> {
+            CarritoItem item = CarritoItem.builder()
+                    .carrito(carritoRepository.getReferenceById(carritoId))
+                    .producto(productoRepository.getReferenceById(productoId))
+                    .cantidad(cantidad)
+                    .precioUnitario(precioUnitario)
+                    .build();
+            return carritoItemRepository.save(item).getId();
+        });
+    }
+
+    // Dentro de la transacción del checkout: escribe lo pendiente y congela el carrito hasta que esa
+    // transacción termine. Si confirma, el carrito se descarta; si no, vuelve a aceptar cambios.
+    // Un cambio que llega entre medio espera en vez de quedar en memoria y perderse con el descarte
+    public void cerrarParaCheckout(Long usuarioId) {
+        CarritoEnMemoria carrito = obtener(usuarioId);
+        synchronized (carrito) {
+            while (carrito.enCheckout) {
+                esperarCheckout(carrito);
+            }
+            escribir(List.of(carrito));
+            carrito.enCheckout = true;
+        }
+        
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int estado) {
+                synchronized (carrito) {
+                    carrito.enCheckout = false;
+                    if (estado == STATUS_COMMITTED) {
+                        carrito.descartado = true;
+                        carritos.remove(usuarioId, carrito);
+                    }
+                    carrito.notifyAll();
+                }
+            }
+        });
+    }
+
+    public void descartar(Long usuarioId) {
+        TransaccionUtil.despuesDelCommit(() -> {
+            CarritoEnMemoria carrito = carritos.remove(usuarioId);
+            if (carrito != null) {
+                synchronized (carrito) {
+                    carrito.descartado = true;
+                }
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${carrito.flush-intervalo-ms}")
+    public void flushPeriodico() {
+        List<CarritoEnMemoria> pendientes = new ArrayList<>();
+        for (CarritoEnMemoria carrito : carritos.values()) {
+            synchronized (carrito) {
+                if (carrito.tienePendientes()) {
+                    pendientes.add(carrito);
+                }
+            }
+        }
+
+        if (!pendientes.isEmpty()) {
+            try {
+                escribir(pendientes);
+            } catch (RuntimeException e) {
+                log.error("No se pudieron escribir {} carritos, se reintentará en el próximo ciclo", pendientes.size(), e);
+            }
+        }
+
+        expulsarInactivos();
+    }
+
+    private void escribir(Collection<CarritoEnMemoria> carritosAEscribir) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<CarritoEnMemoria, Cambios> cambios = new HashMap<>();
+            for (CarritoEnMemoria carrito : carritosAEscribir) {
+                synchronized (carrito) {
+                    if (carrito.tienePendientes()) {
+                        cambios.put(carrito, carrito.extraerPendientes());
+                    }
+                }
+            }
+            if (cambios.isEmpty()) {
+                return;
+            }
+
+            // Si la transacción (propia o la del checkout) no confirma, los cambios vuelven a quedar pendientes
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int estado) {
+                    if (estado != STATUS_COMMITTED) {
+                        cambios.forEach((carrito, pendientes) -> {
+                            synchronized (carrito) {
+                                carrito.restaurar(pendientes);
+                            }
+                        });
+                    }
+                }
+            });
+
+            List<Object[]> actualizaciones = new ArrayList<>();
+            List<Object[]> eliminaciones = new ArrayList<>();
+            for (Cambios pendientes : cambios.values()) {
+                pendientes.cantidades().forEach((itemId, cantidad) -> actualizaciones.add(new Object[]{cantidad, itemId}));
+                pendientes.eliminados().forEach(itemId -> eliminaciones.add(new Object[]{itemId}));
+            }
+            if (!actualizaciones.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE carrito_items SET cantidad = ? WHERE id = ?", actualizaciones);
+            }
+            if (!eliminaciones.isEmpty()) {
+                jdbcTemplate.batchUpdate("DELETE FROM carrito_items WHERE id = ?", eliminaciones);
+            }
+        });
+    }
+
+    private void expulsarInactivos() {
+        long limite = System.currentTimeMillis() - inactividadMs;
+        carritos.forEach((usuarioId, carrito) -> {
+            synchronized (carrito) {
+                if (!carrito.tienePendientes() && !carrito.enCheckout && carrito.ultimoAcceso < limite) {
+                    carrito.descartado = true;
+                    carritos.remove(usuarioId, carrito);
+                }
+            }
+        });
+    }
+
+    private CarritoEnMemoria obtener(Long usuarioId) {
+        CarritoEnMemoria carrito = carritos.get(usuarioId);
+        if (carrito != null) {
+            return carrito;
+        }
+        // Una sola carga por usuario: dos primeras requests concurrentes no pueden crear
+        // cada una su propio carrito ACTIVO. La segunda espera el resultado de la primera
+        CompletableFuture<CarritoEnMemoria> propia = new CompletableFuture<>();
+        CompletableFuture<CarritoEnMemoria> enCurso = cargas.putIfAbsent(usuarioId, propia);
+        if (enCurso != null) {
+            return esperarCarga(enCurso);
+        }
+        try {
+            // Otra carga pudo publicar su carrito entre la lectura de arriba y el putIfAbsent
+            carrito = carritos.get(usuarioId);
+            if (carrito == null) {
+                carrito = cargar(usuarioId);
+                carritos.put(usuarioId, carrito);
+            }
+            propia.complete(carrito);
+            return carrito;
+        } catch (RuntimeException | Error e) {
+            propia.completeExceptionally(e);
+            throw e;
+        } finally {
+            cargas.remove(usuarioId, propia);
+        }
+    }
+
+    private CarritoEnMemoria esperarCarga(CompletableFuture<CarritoEnMemoria> carga) {
+        try {
+            return carga.join();
+        } catch (CompletionException e) {
+            // Quien espera recibe el mismo error que la carga, no el envoltorio del future
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+    
+    private void esperarCheckout(CarritoEnMemoria carrito) {
+        try {
+            carrito.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido esperando el checkout del carrito " + carrito.id, e);
+        }
+    }
+
+    private CarritoEnMemoria cargar(Long usuarioId) {
+        return transactionTemplate.execute(status -> {
+            Carrito carrito = carritoRepository.findByUsuarioIdAndEstado(usuarioId, EstadoCarrito.ACTIVO)
+                    .orElseGet(() -> {
+                        Usuario usuario = usuarioRepository.findById(usuarioId)
+                                .orElseThrow(() -> new RuntimeException("Usuario no encontrado: " + usuarioId));
+
+                        Carrito nuevoCarrito = Carrito.builder()
+                                .usuario(usuario)
+                                .estado(EstadoCarrito.ACTIVO)
+                                .build();
+                        return carritoRepository.save(nuevoCarrito);
+                    });
+
+            CarritoEnMemoria enMemoria = new CarritoEnMemoria(carrito.getId(), usuarioId, carrito.getFechaCreacion());
+            for (CarritoItemResumen item : carritoItemRepository.findResumenByCarritoId(carrito.getId())) {
+                enMemoria.items.put(item.id(),
+                        new ItemEnMemoria(item.id(), item.productoId(), item.cantidad(), item.precioUnitario()));
+            }
+            return enMemoria;
+        });
+    }
+
+    private record Cambios(Map<Long, Integer> cantidades, Set<Long> eliminados) {
+    }
+
+    public static final class CarritoEnMemoria {
+
+        private final Long id;
+        private final Long usuarioId;
+        private final LocalDateTime fechaCreacion;
+        private final Map<Long, ItemEnMemoria> items = new LinkedHashMap<>();
+        private Map<Long, Integer> cantidadesPendientes = new HashMap<>();
+        private Set<Long> eliminadosPendientes = new HashSet<>();
+        private long ultimoAcceso = System.currentTimeMillis();
+        private boolean descartado = false;
+        private boolean enCheckout = false;
+
+        CarritoEnMemoria(Long id, Long usuarioId, LocalDateTime fechaCreacion) {
+            this.id = id;
+            this.usuarioId = usuarioId;
+            this.fechaCreacion = fechaCreacion;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public Long getUsuarioId() {
+            return usuarioId;
+        }
+
+        public LocalDateTime getFechaCreacion() {
+            return fechaCreacion;
+        }
+
+        public Collection<ItemEnMemoria> getItems() {
+            return items.values();
+        }
+
+        public ItemEnMemoria buscarItem(Long itemId) {
+            return items.get(itemId);
+        }
+
+        public ItemEnMemoria buscarItemPorProducto(Long productoId) {
+            for (ItemEnMemoria item : items.values()) {
+                if (item.productoId.equals(productoId)) {
+                    return item;
+                }
+            }
+            return null;
+        }
+
+        public void agregarItem(ItemEnMemoria item) {
+            items.put(item.id, item);
+        }
+
+        public void cambiarCantidad(ItemEnMemoria item, Integer cantidad) {
+            item.cantidad = cantidad;
+            cantidadesPendientes.put(item.id, cantidad);
+        }
+
+        public void eliminarItem(ItemEnMemoria item) {
+            items.remove(item.id);
+            cantidadesPendientes.remove(item.id);
+            eliminadosPendientes.add(item.id);
+        }
+
+        public void vaciar() {
+            for (ItemEnMemoria item : new ArrayList<>(items.values())) {
+                eliminarItem(item);
+            }
+        }
+
+        private boolean tienePendientes() {
+            return !cantidadesPendientes.isEmpty() || !eliminadosPendientes.isEmpty();
+        }
+
+        private Cambios extraerPendientes() {
+            Cambios cambios = new Cambios(cantidadesPendientes, eliminadosPendientes);
+            cantidadesPendientes = new HashMap<>();
+            eliminadosPendientes = new HashSet<>();
+            return cambios;
+        }
+
+        private void restaurar(Cambios cambios) {
+            // Lo modificado después de extraer los cambios tiene prioridad sobre lo que se reintenta
+            cambios.cantidades().forEach((itemId, cantidad) -> {
+                if (items.containsKey(itemId)) {
+                    cantidadesPendientes.putIfAbsent(itemId, cantidad);
+                }
+            });
+            eliminadosPendientes.addAll(cambios.eliminados());
+        }
+    }
+
+    public static final class ItemEnMemoria {
+
+        private final Long id;
+        private final Long productoId;
+        private Integer cantidad;
+        private final BigDecimal precioUnitario;
+
+        public ItemEnMemoria(Long id, Long productoId, Integer cantidad, BigDecimal precioUnitario) {
+            this.id = id;
+            this.productoId = productoId;
+            this.cantidad = cantidad;
+            this.precioUnitario = precioUnitario;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public Long getProductoId() {
+            return productoId;
+        }
+
+        public Integer getCantidad() {
+            return cantidad;
+        }
+
+        public BigDecimal getPrecioUnitario() {
+            return precioUnitario;
+        }
+    }
+}
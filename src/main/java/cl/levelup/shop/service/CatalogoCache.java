@@ -0,0 +1,139 @@
+package cl.levelup.shop.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+@Component
+public class CatalogoCache {
+
+    // El ETag incluye el arranque de la instancia: la versión vuelve a 1 al reiniciar
+    private final String instancia = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong(1);
+    // ETag de lo que se lee del snapshot: avanza con cada escritura del admin y con cada cambio de stock
+    private final AtomicLong revision = new AtomicLong(1);
+    // ETag de los listados pre-serializados: sigue a las escrituras del admin al instante y a las ventas
+    // como mucho una vez por intervalo, para no volver a serializar y comprimir el catálogo en cada venta
+    private final AtomicLong revisionListados = new AtomicLong(1);
+    private final AtomicLong secuenciaStock = new AtomicLong();
+    private final Map<Long, Long> ultimaSecuenciaStock = new HashMap<>();
+    private final AtomicBoolean stockSinPublicar = new AtomicBoolean();
+    private final long publicacionStockMs;
+    private volatile long ultimaModificacion = System.currentTimeMillis();
+    private final Object lockRecarga = new Object();
+    private volatile CatalogoSnapshot snapshot;
+    private volatile ListadosCatalogo listados;
+
+    public CatalogoCache(@Value("${catalogo.stock.publicacion-ms}") long publicacionStockMs) {
+        this.publicacionStockMs = publicacionStockMs;
+    }
+
+    public CatalogoSnapshot obtener(LongFunction<CatalogoSnapshot> cargador) {
+        // Solo se recarga desde la base de datos si una escritura confirmada avanzó la versión
+        CatalogoSnapshot actual = snapshot;
+        if (actual != null && actual.version() == version.get()) {
+            return actual;
+        }
+
+        synchronized (lockRecarga) {
+            long objetivo = version.get();
+            actual = snapshot;
+            if (actual != null && actual.version() == objetivo) {
+                return actual;
+            }
+            CatalogoSnapshot nuevo = cargador.apply(objetivo);
+            snapshot = nuevo;
+            return nuevo;
+        }
+    }
+
+    public void invalidar() {
+        // Solo se invalida después del commit para no recargar datos que aún no son visibles
+        TransaccionUtil.despuesDelCommit(() -> {
+            ultimaModificacion = System.currentTimeMillis();
+            version.incrementAndGet();
+            revision.incrementAndGet();
+            revisionListados.incrementAndGet();
+        });
+    }
+
+    // Se llama dentro de la transacción, con las filas de los productos aún bloqueadas: la secuencia
+    // ordena los cambios de un mismo producto aunque los commits terminen en otro orden
+    public void actualizarStock(Map<Long, Integer> stockPorProducto) {
+        long secuencia = secuenciaStock.incrementAndGet();
+        Map<Long, Integer> stock = Map.copyOf(stockPorProducto);
+        TransaccionUtil.despuesDelCommit(() -> aplicarStock(secuencia, stock));
+    }
+
+    // Se lee sin cargar el snapshot para poder responder 304 sin tocar la BD
+    public VersionCatalogo versionActual() {
+        return new VersionCatalogo("\"" + instancia + "-" + revision.get() + "\"");
+    }
+
+    public VersionCatalogo versionListados() {
+        return new VersionCatalogo("\"" + instancia + "-l" + revisionListados() + "\"");
+    }
+
+    // Todas las variantes de una revisión de listados se serializan desde el mismo snapshot, así sus
+    // bytes no dependen de cuándo se construyó cada una. Leer la revisión antes que el snapshot
+    // garantiza que el snapshot fijado no es más viejo que ella
+    public ListadosCatalogo listados(LongFunction<CatalogoSnapshot> cargador) {
+        long objetivo = revisionListados();
+        ListadosCatalogo actual = listados;
+        if (actual != null && actual.revision() >= objetivo) {
+            return actual;
+        }
+        CatalogoSnapshot vigente = obtener(cargador);
+        synchronized (lockRecarga) {
+            actual = listados;
+            if (actual != null && actual.revision() >= objetivo) {
+                return actual;
+            }
+            ListadosCatalogo nuevos = new ListadosCatalogo(objetivo, vigente);
+            listados = nuevos;
+            return nuevos;
+        }
+    }
+
+    private long revisionListados() {
+        long ahora = System.currentTimeMillis();
+        if (stockSinPublicar.get() && ahora - ultimaModificacion >= publicacionStockMs
+                && stockSinPublicar.compareAndSet(true, false)) {
+            ultimaModificacion = ahora;
+            revisionListados.incrementAndGet();
+        }
+        return revisionListados.get();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    private void aplicarStock(long secuencia, Map<Long, Integer> stock) {
+        synchronized (lockRecarga) {
+            // Un cambio más antiguo que el último aplicado ya está contenido en él
+            Map<Long, Integer> vigentes = new HashMap<>();
+            stock.forEach((productoId, unidades) -> {
+                if (secuencia > ultimaSecuenciaStock.getOrDefault(productoId, 0L)) {
+                    ultimaSecuenciaStock.put(productoId, secuencia);
+                    vigentes.put(productoId, unidades);
+                }
+            });
+            if (vigentes.isEmpty()) {
+                return;
+            }
+            CatalogoSnapshot actual = snapshot;
+            if (actual != null) {
+                snapshot = actual.conStock(vigentes);
+            }
+            // Dentro del lock: quien lea la revisión nueva ya encuentra el snapshot con el stock aplicado
+            revision.incrementAndGet();
+        }
+        stockSinPublicar.set(true);
+    }
+}
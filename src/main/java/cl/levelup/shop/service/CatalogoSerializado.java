@@ -0,0 +1,71 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// Bytes JSON y gzip de los listados del catálogo (activos, por categoría) para la versión vigente:
+// Jackson y el compresor corren una vez por versión y variante, no en cada request
+@Component
+@RequiredArgsConstructor
+public class CatalogoSerializado {
+    
+    private final ObjectMapper objectMapper;
+    
+    private final AtomicReference<PorVersion> actual = new AtomicReference<>(new PorVersion(0, new ConcurrentHashMap<>()));
+    
+    public RespuestaSerializada obtener(long version, String variante, Supplier<List<ProductoResponseDTO>> productos) {
+        // Una versión nueva descarta de una vez todas las variantes de la anterior
+        PorVersion cache = actual.updateAndGet(c -> c.version() < version ? new PorVersion(version, new ConcurrentHashMap<>()) : c);
+        if (cache.version() != version) {
+            // El snapshot de este request quedó atrás: se responde solo JSON, sin comprimir al máximo
+            // bytes que nadie más va a reutilizar
+            return sinCache(productos.get());
+        }
+        return cache.variantes().computeIfAbsent(variante, k -> comprimir(serializar(productos.get())));
+    }
+    
+    // Resultados que no se repiten (búsquedas): solo JSON, sin el costo de comprimir al máximo
+    public RespuestaSerializada sinCache(Object valor) {
+        return new RespuestaSerializada(serializar(valor), null);
+    }
+    
+    private byte[] serializar(Object valor) {
+        try {
+            return objectMapper.writeValueAsBytes(valor);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el catálogo", e);
+        }
+    }
+    
+    private RespuestaSerializada comprimir(byte[] json) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(json.length / 4);
+        // Se comprime una vez por versión, así que conviene el nivel máximo
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new RespuestaSerializada(json, salida.toByteArray());
+    }
+    
+    private record PorVersion(long version, Map<String, RespuestaSerializada> variantes) {
+    }
+}
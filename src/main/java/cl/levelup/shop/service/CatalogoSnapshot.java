@@ -0,0 +1,134 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public record CatalogoSnapshot(
+        long version,
+        List<ProductoResponseDTO> activos,
+        Map<Long, ProductoResponseDTO> porId,
+        Map<String, ProductoResponseDTO> porCode,
+        Map<String, List<ProductoResponseDTO>> activosPorCategoria,
+        FacetasIndex facetas
+) {
+
+    public static CatalogoSnapshot construir(long version, List<ProductoResponseDTO> productos) {
+        List<ProductoResponseDTO> activos = new ArrayList<>();
+        Map<Long, ProductoResponseDTO> porId = new HashMap<>();
+        Map<String, ProductoResponseDTO> porCode = new HashMap<>();
+        Map<String, List<ProductoResponseDTO>> porCategoria = new HashMap<>();
+
+        for (ProductoResponseDTO producto : productos) {
+            porId.put(producto.id(), producto);
+            porCode.put(producto.code(), producto);
+            if (Boolean.TRUE.equals(producto.activo())) {
+                activos.add(producto);
+                porCategoria.computeIfAbsent(producto.categoriaId(), k -> new ArrayList<>()).add(producto);
+            }
+        }
+
+        Map<String, List<ProductoResponseDTO>> porCategoriaInmutable = new HashMap<>();
+        porCategoria.forEach((categoriaId, lista) -> porCategoriaInmutable.put(categoriaId, List.copyOf(lista)));
+
+        List<ProductoResponseDTO> activosInmutables = List.copyOf(activos);
+        return new CatalogoSnapshot(
+                version,
+                activosInmutables,
+                Map.copyOf(porId),
+                Map.copyOf(porCode),
+                Map.copyOf(porCategoriaInmutable),
+                FacetasIndex.construir(activosInmutables)
+        );
+    }
+
+    // Copia con el stock de algunos productos cambiado: solo se reemplazan esos DTO y el bit de "con stock",
+    // el resto de las listas, mapas e índices de facetas se reconstruye por referencia sin releer la BD
+    public CatalogoSnapshot conStock(Map<Long, Integer> stockPorProducto) {
+        Map<Long, ProductoResponseDTO> nuevosPorId = new HashMap<>(porId);
+        Map<String, ProductoResponseDTO> nuevosPorCode = new HashMap<>(porCode);
+        List<ProductoResponseDTO> nuevosActivos = new ArrayList<>(activos);
+        Map<String, List<ProductoResponseDTO>> nuevosPorCategoria = new HashMap<>(activosPorCategoria);
+        boolean cambioActivo = false;
+        
+        for (Map.Entry<Long, Integer> entrada : stockPorProducto.entrySet()) {
+            ProductoResponseDTO anterior = porId.get(entrada.getKey());
+            if (anterior == null || entrada.getValue().equals(anterior.stock())) {
+                continue;
+            }
+            ProductoResponseDTO nuevo = conStock(anterior, entrada.getValue());
+            nuevosPorId.put(nuevo.id(), nuevo);
+            nuevosPorCode.put(nuevo.code(), nuevo);
+            if (!Boolean.TRUE.equals(nuevo.activo())) {
+                continue;
+            }
+            
+            // Los activos vienen ordenados por id: la posición se ubica por búsqueda binaria
+            int posicion = posicionDe(nuevosActivos, nuevo.id());
+            if (posicion >= 0) {
+                nuevosActivos.set(posicion, nuevo);
+                cambioActivo = true;
+            }
+            List<ProductoResponseDTO> categoria = new ArrayList<>(nuevosPorCategoria.getOrDefault(nuevo.categoriaId(), List.of()));
+            int enCategoria = posicionDe(categoria, nuevo.id());
+            if (enCategoria >= 0) {
+                categoria.set(enCategoria, nuevo);
+                nuevosPorCategoria.put(nuevo.categoriaId(), List.copyOf(categoria));
+            }
+        }
+        
+        List<ProductoResponseDTO> activosInmutables = cambioActivo ? List.copyOf(nuevosActivos) : activos;
+        return new CatalogoSnapshot(
+                version,
+                activosInmutables,
+                Map.copyOf(nuevosPorId),
+                Map.copyOf(nuevosPorCode),
+                Map.copyOf(nuevosPorCategoria),
+                cambioActivo ? facetas.conProductos(activosInmutables) : facetas
+        );
+    }
+    
+    public List<ProductoResponseDTO> activosDeCategoria(String categoriaId) {
+        return activosPorCategoria.getOrDefault(categoriaId, List.of());
+    }
+    
+    private static int posicionDe(List<ProductoResponseDTO> productos, Long id) {
+        int bajo = 0;
+        int alto = productos.size() - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            int comparacion = productos.get(medio).id().compareTo(id);
+            if (comparacion == 0) {
+                return medio;
+            }
+            if (comparacion < 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio - 1;
+            }
+        }
+        return -1;
+    }
+    
+    private static ProductoResponseDTO conStock(ProductoResponseDTO producto, Integer stock) {
+        return new ProductoResponseDTO(
+                producto.id(),
+                producto.code(),
+                producto.nombre(),
+                producto.categoriaId(),
+                producto.categoriaNombre(),
+                producto.precio(),
+                stock,
+                producto.marca(),
+                producto.rating(),
+                producto.descripcion(),
+                producto.imagen(),
+                producto.specs(),
+                producto.tags(),
+                producto.activo()
+        );
+    }
+}
@@ -18,6 +18,11 @@ import java.util.stream.Collectors;
 public class CategoriaService {
     
     private final CategoriaRepository categoriaRepository;
+    private final CatalogoCache catalogoCache;
+    
+    public VersionCatalogo versionCatalogo() {
+        return catalogoCache.versionActual();
+    }
     
     @Transactional(readOnly = true)
     public List<CategoriaResponseDTO> obtenerTodas() {
@@ -45,6 +50,7 @@ public class CategoriaService {
                 .build();
         
         Categoria guardada = categoriaRepository.save(categoria);
+        catalogoCache.invalidar();
         return convertirAResponse(guardada);
     }
     
@@ -56,6 +62,7 @@ public class CategoriaService {
         categoria.setNombre(request.nombre());
         
         Categoria actualizada = categoriaRepository.save(categoria);
+        catalogoCache.invalidar();
         return convertirAResponse(actualizada);
     }
     
@@ -65,6 +72,7 @@ public class CategoriaService {
             throw new ResourceNotFoundException("Categoría no encontrada: " + id);
         }
         categoriaRepository.deleteById(id);
+        catalogoCache.invalidar();
     }
     
     private CategoriaResponseDTO convertirAResponse(Categoria categoria) {
@@ -0,0 +1,240 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import cl.levelup.shop.dto.response.ValorFacetaDTO;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Un BitSet por valor de faceta sobre las posiciones de los productos activos del snapshot:
+// combinar filtros es un AND/OR de bits y cada conteo un cardinality(), sin tocar la BD.
+// Es inmutable y se reconstruye junto con el snapshot en cada escritura del admin; una venta solo recalcula el stock
+public final class FacetasIndex {
+    
+    public static final String CATEGORIA = "categoria";
+    public static final String MARCA = "marca";
+    public static final String PRECIO = "precio";
+    public static final String RATING = "rating";
+    public static final String STOCK = "stock";
+    
+    // Límites de los rangos de precio en CLP: [0, 20000), [20000, 50000), ..., [300000, ∞)
+    private static final long[] LIMITES_PRECIO = {20_000, 50_000, 100_000, 300_000};
+    private static final int[] RATINGS_MINIMOS = {4, 3, 2, 1};
+    private static final String CON_STOCK = "true";
+    
+    private final List<ProductoResponseDTO> productos;
+    private final Map<String, BitSet> porCategoria;
+    private final Map<String, String> nombresCategoria;
+    private final Map<String, BitSet> porMarca;
+    private final Map<String, String> etiquetasMarca;
+    private final Map<String, BitSet> porPrecio;
+    private final Map<String, BitSet> porRating;
+    private final BitSet conStock;
+    
+    private FacetasIndex(List<ProductoResponseDTO> productos) {
+        this.productos = productos;
+        Map<String, BitSet> categorias = new TreeMap<>();
+        Map<String, String> nombres = new TreeMap<>();
+        Map<String, BitSet> marcas = new TreeMap<>();
+        Map<String, String> etiquetas = new TreeMap<>();
+        Map<String, BitSet> precios = new LinkedHashMap<>();
+        Map<String, BitSet> ratings = new LinkedHashMap<>();
+        for (int i = 0; i <= LIMITES_PRECIO.length; i++) {
+            precios.put(rangoPrecio(i), new BitSet(productos.size()));
+        }
+        for (int minimo : RATINGS_MINIMOS) {
+            ratings.put(String.valueOf(minimo), new BitSet(productos.size()));
+        }
+        BitSet stock = new BitSet(productos.size());
+        
+        for (int posicion = 0; posicion < productos.size(); posicion++) {
+            ProductoResponseDTO producto = productos.get(posicion);
+            
+            categorias.computeIfAbsent(producto.categoriaId(), k -> new BitSet()).set(posicion);
+            nombres.putIfAbsent(producto.categoriaId(), producto.categoriaNombre());
+            
+            if (producto.marca() != null && !producto.marca().isBlank()) {
+                // "LOGITECH" y "Logitech" son la misma marca; se muestra la primera escritura encontrada
+                String marca = NormalizadorTexto.normalizar(producto.marca().trim());
+                marcas.computeIfAbsent(marca, k -> new BitSet()).set(posicion);
+                etiquetas.putIfAbsent(marca, producto.marca().trim());
+            }
+            
+            if (producto.precio() != null) {
+                precios.get(rangoPrecio(indiceRango(producto.precio()))).set(posicion);
+            }
+            
+            // Rating acumulativo: un producto con 4.5 cuenta en "4+", "3+", "2+" y "1+"
+            if (producto.rating() != null) {
+                for (int minimo : RATINGS_MINIMOS) {
+                    if (producto.rating().compareTo(BigDecimal.valueOf(minimo)) >= 0) {
+                        ratings.get(String.valueOf(minimo)).set(posicion);
+                    }
+                }
+            }
+            
+            if (producto.stock() != null && producto.stock() > 0) {
+                stock.set(posicion);
+            }
+        }
+        
+        this.porCategoria = categorias;
+        this.nombresCategoria = nombres;
+        this.porMarca = marcas;
+        this.etiquetasMarca = etiquetas;
+        this.porPrecio = precios;
+        this.porRating = ratings;
+        this.conStock = stock;
+    }
+    
+    // Mismos productos en las mismas posiciones, con otro stock: se comparten los BitSet del resto de las facetas
+    private FacetasIndex(FacetasIndex base, List<ProductoResponseDTO> productos) {
+        this.productos = productos;
+        this.porCategoria = base.porCategoria;
+        this.nombresCategoria = base.nombresCategoria;
+        this.porMarca = base.porMarca;
+        this.etiquetasMarca = base.etiquetasMarca;
+        this.porPrecio = base.porPrecio;
+        this.porRating = base.porRating;
+        BitSet stock = new BitSet(productos.size());
+        for (int posicion = 0; posicion < productos.size(); posicion++) {
+            Integer unidades = productos.get(posicion).stock();
+            if (unidades != null && unidades > 0) {
+                stock.set(posicion);
+            }
+        }
+        this.conStock = stock;
+    }
+    
+    public static FacetasIndex construir(List<ProductoResponseDTO> activos) {
+        return new FacetasIndex(activos);
+    }
+    
+    public FacetasIndex conProductos(List<ProductoResponseDTO> activos) {
+        return new FacetasIndex(this, activos);
+    }
+    
+    public List<ProductoResponseDTO> filtrar(FiltroFacetas filtro) {
+        BitSet resultado = todos();
+        for (BitSet seleccion : selecciones(filtro).values()) {
+            if (seleccion != null) {
+                resultado.and(seleccion);
+            }
+        }
+        
+        List<ProductoResponseDTO> items = new ArrayList<>(resultado.cardinality());
+        for (int posicion = resultado.nextSetBit(0); posicion >= 0; posicion = resultado.nextSetBit(posicion + 1)) {
+            items.add(productos.get(posicion));
+        }
+        return items;
+    }
+    
+    // Conteos "disjuntivos": cada faceta se cuenta aplicando los filtros de las demás pero no el propio,
+    // así el frontend puede mostrar cuántos productos agregaría marcar otro valor de la misma faceta
+    public Map<String, List<ValorFacetaDTO>> contar(FiltroFacetas filtro) {
+        Map<String, BitSet> selecciones = selecciones(filtro);
+        
+        Map<String, List<ValorFacetaDTO>> facetas = new LinkedHashMap<>();
+        facetas.put(CATEGORIA, contarFaceta(base(selecciones, CATEGORIA), porCategoria, nombresCategoria));
+        facetas.put(MARCA, contarFaceta(base(selecciones, MARCA), porMarca, etiquetasMarca));
+        facetas.put(PRECIO, contarFaceta(base(selecciones, PRECIO), porPrecio, Map.of()));
+        facetas.put(RATING, contarFaceta(base(selecciones, RATING), porRating, Map.of()));
+        facetas.put(STOCK, contarFaceta(base(selecciones, STOCK), Map.of(CON_STOCK, conStock), Map.of()));
+        return facetas;
+    }
+    
+    private Map<String, BitSet> selecciones(FiltroFacetas filtro) {
+        Map<String, BitSet> selecciones = new LinkedHashMap<>();
+        selecciones.put(CATEGORIA, union(porCategoria, filtro.categorias(), false));
+        selecciones.put(MARCA, union(porMarca, filtro.marcas(), true));
+        selecciones.put(PRECIO, union(porPrecio, filtro.rangosPrecio(), false));
+        selecciones.put(RATING, filtro.ratingMinimo() == null ? null : porRatingMinimo(filtro.ratingMinimo()));
+        selecciones.put(STOCK, Boolean.TRUE.equals(filtro.soloConStock()) ? conStock : null);
+        return selecciones;
+    }
+    
+    private BitSet union(Map<String, BitSet> valores, Set<String> seleccionados, boolean normalizar) {
+        if (seleccionados == null || seleccionados.isEmpty()) {
+            return null;
+        }
+        BitSet union = new BitSet(productos.size());
+        for (String valor : seleccionados) {
+            BitSet bits = valores.get(normalizar ? NormalizadorTexto.normalizar(valor.trim()) : valor);
+            if (bits != null) {
+                union.or(bits);
+            }
+        }
+        return union;
+    }
+    
+    private BitSet porRatingMinimo(int minimo) {
+        if (minimo <= 0) {
+            return null;
+        }
+        // Los mínimos sin bits precalculados (por ejemplo 5) se resuelven recorriendo el catálogo
+        BitSet bits = porRating.get(String.valueOf(minimo));
+        if (bits != null) {
+            return bits;
+        }
+        BitSet exactos = new BitSet(productos.size());
+        for (int posicion = 0; posicion < productos.size(); posicion++) {
+            BigDecimal rating = productos.get(posicion).rating();
+            if (rating != null && rating.compareTo(BigDecimal.valueOf(minimo)) >= 0) {
+                exactos.set(posicion);
+            }
+        }
+        return exactos;
+    }
+    
+    private BitSet base(Map<String, BitSet> selecciones, String excluida) {
+        BitSet base = todos();
+        selecciones.forEach((faceta, seleccion) -> {
+            if (seleccion != null && !faceta.equals(excluida)) {
+                base.and(seleccion);
+            }
+        });
+        return base;
+    }
+    
+    private List<ValorFacetaDTO> contarFaceta(BitSet base, Map<String, BitSet> valores, Map<String, String> etiquetas) {
+        List<ValorFacetaDTO> conteos = new ArrayList<>(valores.size());
+        BitSet interseccion = new BitSet(productos.size());
+        for (Map.Entry<String, BitSet> valor : valores.entrySet()) {
+            interseccion.clear();
+            interseccion.or(valor.getValue());
+            interseccion.and(base);
+            conteos.add(new ValorFacetaDTO(valor.getKey(), etiquetas.getOrDefault(valor.getKey(), valor.getKey()),
+                    interseccion.cardinality()));
+        }
+        return conteos;
+    }
+    
+    private BitSet todos() {
+        BitSet todos = new BitSet(productos.size());
+        todos.set(0, productos.size());
+        return todos;
+    }
+    
+    private static int indiceRango(BigDecimal precio) {
+        for (int i = 0; i < LIMITES_PRECIO.length; i++) {
+            if (precio.compareTo(BigDecimal.valueOf(LIMITES_PRECIO[i])) < 0) {
+                return i;
+            }
+        }
+        return LIMITES_PRECIO.length;
+    }
+    
+    private static String rangoPrecio(int indice) {
+        if (indice == LIMITES_PRECIO.length) {
+            return LIMITES_PRECIO[indice - 1] + "+";
+        }
+        long desde = indice == 0 ? 0 : LIMITES_PRECIO[indice - 1];
+        return desde + "-" + LIMITES_PRECIO[indice];
+    }
+}
@@ -0,0 +1,13 @@
+package cl.levelup.shop.service;
+
+import java.util.Set;
+
+// Dentro de una faceta los valores se combinan con OR y entre facetas con AND; una faceta vacía no filtra
+public record FiltroFacetas(
+        Set<String> categorias,
+        Set<String> marcas,
+        Set<String> rangosPrecio,
+        Integer ratingMinimo,
+        Boolean soloConStock
+) {
+}
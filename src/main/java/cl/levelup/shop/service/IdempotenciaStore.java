@@ -0,0 +1,139 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.exception.BadRequestException;
+import cl.levelup.shop.exception.ServiceUnavailableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Respuestas ya calculadas por Idempotency-Key: un reintento del cliente recibe la misma
+// respuesta sin volver a ejecutar la operación
+@Component
+public class IdempotenciaStore {
+    
+    private final long ttlMs;
+    private final long esperaMs;
+    private final int maxEntradas;
+    
+    // operación:usuario:clave -> huella de la solicitud y resultado (en curso o terminado)
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+    
+    public IdempotenciaStore(@Value("${idempotencia.ttl-ms}") long ttlMs,
+                             @Value("${idempotencia.espera-ms}") long esperaMs,
+                             @Value("${idempotencia.max-entradas}") int maxEntradas) {
+        this.ttlMs = ttlMs;
+        this.esperaMs = esperaMs;
+        this.maxEntradas = maxEntradas;
+    }
+    
+    public <T> T ejecutar(String operacion, Long usuarioId, String clave, Object solicitud, Supplier<T> accion) {
+        if (clave == null || clave.isBlank()) {
+            return accion.get();
+        }
+        
+        // La clave se acota al usuario: la misma clave de dos usuarios no comparte respuesta
+        String id = operacion + ":" + usuarioId + ":" + clave;
+        long huella = huella(solicitud);
+        
+        while (true) {
+            long ahora = System.currentTimeMillis();
+            if (entradas.size() >= maxEntradas && !entradas.containsKey(id)) {
+                liberarEspacio();
+            }
+            Entrada nueva = new Entrada(huella, new CompletableFuture<>(), ahora + ttlMs);
+            Entrada existente = entradas.putIfAbsent(id, nueva);
+            
+            if (existente == null) {
+                return ejecutarPrimera(id, nueva, accion);
+            }
+            if (existente.resultado().isDone() && existente.expiraEn() < ahora) {
+                entradas.remove(id, existente);
+                continue;
+            }
+            if (existente.huella() != huella) {
+                throw new BadRequestException("La clave de idempotencia ya se usó con una solicitud distinta");
+            }
+            // Un duplicado concurrente espera el resultado de la primera ejecución
+            return esperar(existente);
+        }
+    }
+    
+    @Scheduled(fixedDelay = 60000)
+    public void purgar() {
+        long ahora = System.currentTimeMillis();
+        entradas.values().removeIf(entrada -> entrada.resultado().isDone() && entrada.expiraEn() < ahora);
+    }
+    
+    private void liberarEspacio() {
+        purgar();
+        // Las entradas en curso se conservan porque hay requests esperándolas
+        MapaAcotadoUtil.descartarExceso(entradas, maxEntradas, entrada -> entrada.resultado().isDone());
+        if (entradas.size() >= maxEntradas) {
+            throw new ServiceUnavailableException("Demasiadas solicitudes idempotentes en curso", Math.max(1, esperaMs / 1000));
+        }
+    }
+    
+    private <T> T ejecutarPrimera(String id, Entrada entrada, Supplier<T> accion) {
+        try {
+            T resultado = accion.get();
+            entrada.resultado().complete(resultado);
+            return resultado;
+        } catch (Throwable e) {
+            entrada.resultado().completeExceptionally(e);
+            throw e;
+        } finally {
+            // Cualquier fallo (también un Error) despierta a los duplicados que esperan y libera la clave:
+            // un fallo no se guarda y el próximo reintento vuelve a ejecutar la operación
+            if (entrada.resultado().isCompletedExceptionally()) {
+                entradas.remove(id, entrada);
+            }
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> T esperar(Entrada entrada) {
+        try {
+            return (T) entrada.resultado().get(esperaMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // La primera ejecución sigue en curso: el cliente reintenta con la misma clave más tarde
+            throw new ServiceUnavailableException("La solicitud original con esta clave de idempotencia sigue en curso",
+                    Math.max(1, esperaMs / 1000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido esperando la solicitud original", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            if (e.getCause() instanceof Error causa) {
+                throw causa;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+    
+    private long huella(Object solicitud) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(String.valueOf(solicitud).getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(hash).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+    
+    private record Entrada(long huella, CompletableFuture<Object> resultado, long expiraEn) {
+    }
+}
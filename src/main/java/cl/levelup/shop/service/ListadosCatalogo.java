@@ -0,0 +1,8 @@
+package cl.levelup.shop.service;
+
+// Snapshot fijado para una revisión de los listados: de él salen los bytes de todas sus variantes
+public record ListadosCatalogo(
+        long revision,
+        CatalogoSnapshot snapshot
+) {
+}
@@ -0,0 +1,29 @@
+package cl.levelup.shop.service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Predicate;
+
+public final class MapaAcotadoUtil {
+    
+    private MapaAcotadoUtil() {
+    }
+    
+    public static <K, V> void descartarExceso(Map<K, V> mapa, int maximo) {
+        descartarExceso(mapa, maximo, valor -> true);
+    }
+    
+    // Para mapas que siguen llenos después de quitar lo vencido: se descarta una décima parte arbitraria
+    // de las entradas descartables, así el tamaño queda acotado y las claves nuevas siguientes no
+    // vuelven a purgar en cada inserción
+    public static <K, V> void descartarExceso(Map<K, V> mapa, int maximo, Predicate<V> descartable) {
+        int exceso = mapa.size() - maximo + Math.max(1, maximo / 10);
+        Iterator<V> valores = mapa.values().iterator();
+        while (exceso > 0 && valores.hasNext()) {
+            if (descartable.test(valores.next())) {
+                valores.remove();
+                exceso--;
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package cl.levelup.shop.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+public final class NormalizadorTexto {
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^a-z0-9]+");
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "al", "con", "de", "del", "e", "el", "en", "la", "las", "lo", "los",
+            "o", "para", "por", "que", "se", "sin", "su", "sus", "u", "un", "una", "y"
+    );
+
+    private NormalizadorTexto() {
+    }
+
+    // Minúsculas y sin tildes: "Cámara Logitech" -> "camara logitech"
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String sinTildes = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return sinTildes.toLowerCase(Locale.ROOT);
+    }
+
+    public static List<String> tokenizar(String texto) {
+        List<String> tokens = new ArrayList<>();
+        for (String palabra : SEPARADORES.split(normalizar(texto))) {
+            if (palabra.isEmpty() || STOPWORDS.contains(palabra)) {
+                continue;
+            }
+            tokens.add(singularizar(palabra));
+        }
+        return tokens;
+    }
+
+    // Plural liviano en español, igual para el texto indexado y la consulta: "consolas" -> "consola",
+    // "auriculares" -> "auricular", "luces" -> "luz". La "e" final tras consonante también se quita para
+    // que singular y plural queden iguales aunque el plural solo agregue "s": "parlante" y "parlantes" -> "parlant"
+    private static String singularizar(String palabra) {
+        int largo = palabra.length();
+        if (largo <= 3 || !Character.isLetter(palabra.charAt(largo - 2))) {
+            return palabra;
+        }
+        if (largo > 4 && palabra.endsWith("ces")) {
+            return palabra.substring(0, largo - 3) + "z";
+        }
+        if (largo > 4 && palabra.endsWith("es") && esConsonante(palabra.charAt(largo - 3))) {
+            return palabra.substring(0, largo - 2);
+        }
+        if (palabra.charAt(largo - 1) == 's' && palabra.charAt(largo - 2) != 's') {
+            return palabra.substring(0, largo - 1);
+        }
+        if (palabra.charAt(largo - 1) == 'e' && esConsonante(palabra.charAt(largo - 2))) {
+            return palabra.substring(0, largo - 1);
+        }
+        return palabra;
+    }
+
+    private static boolean esConsonante(char c) {
+        return c >= 'a' && c <= 'z' && "aeiou".indexOf(c) < 0;
+    }
+}
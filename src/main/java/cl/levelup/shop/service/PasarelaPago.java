@@ -0,0 +1,17 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.TransbankCommitResponseDTO;
+import cl.levelup.shop.dto.TransbankInitResponseDTO;
+
+// Operaciones de Webpay Plus que usa la tienda; la implementación se elige según transbank.environment
+public interface PasarelaPago {
+    
+    TransbankInitResponseDTO crear(String buyOrder, String sessionId, double amount, String returnUrl);
+    
+    TransbankCommitResponseDTO confirmar(String token);
+    
+    TransbankCommitResponseDTO estado(String token);
+    
+    // Reversa (mismo día) o anula un cargo autorizado; devuelve el tipo informado por Transbank
+    String reembolsar(String token, double amount);
+}
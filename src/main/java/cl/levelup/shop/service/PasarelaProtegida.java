@@ -0,0 +1,192 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.TransbankCommitResponseDTO;
+import cl.levelup.shop.dto.TransbankInitResponseDTO;
+import cl.levelup.shop.exception.ServiceUnavailableException;
+import cl.levelup.shop.exception.SolicitudPagoInvalidaException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Bulkhead + circuit breaker + timeout por operación alrededor de la pasarela real: si Transbank
+// se degrada, los pagos fallan rápido en vez de ocupar los hilos de Tomcat que atienden el catálogo
+public class PasarelaProtegida implements PasarelaPago {
+    
+    public enum EstadoCircuito { CERRADO, SEMI_ABIERTO, ABIERTO }
+    
+    private final PasarelaPago delegada;
+    private final Semaphore cupos;
+    private final long esperaCupoMs;
+    private final int umbralFallos;
+    private final long aperturaMs;
+    private final long timeoutCrearMs;
+    private final long timeoutConfirmarMs;
+    private final long timeoutEstadoMs;
+    private final ThreadPoolExecutor executor;
+    
+    private final AtomicInteger fallosConsecutivos = new AtomicInteger();
+    private final AtomicLong abiertoHasta = new AtomicLong();
+    private final AtomicBoolean sondaEnCurso = new AtomicBoolean();
+    private volatile EstadoCircuito estado = EstadoCircuito.CERRADO;
+    
+    private final Counter rechazosBulkhead;
+    private final Counter rechazosCircuito;
+    private final Counter timeouts;
+    
+    public PasarelaProtegida(PasarelaPago delegada, MeterRegistry meterRegistry, int maxConcurrentes, long esperaCupoMs,
+                             int umbralFallos, long aperturaMs, long timeoutCrearMs, long timeoutConfirmarMs,
+                             long timeoutEstadoMs) {
+        this.delegada = delegada;
+        this.cupos = new Semaphore(maxConcurrentes);
+        this.esperaCupoMs = esperaCupoMs;
+        this.umbralFallos = umbralFallos;
+        this.aperturaMs = aperturaMs;
+        this.timeoutCrearMs = timeoutCrearMs;
+        this.timeoutConfirmarMs = timeoutConfirmarMs;
+        this.timeoutEstadoMs = timeoutEstadoMs;
+        
+        // Un hilo por cupo del bulkhead. El cupo se libera justo antes de que el hilo quede libre,
+        // así que una tarea nueva puede esperar un instante en la cola, que el semáforo ya acota
+        CustomizableThreadFactory hilos = new CustomizableThreadFactory("pasarela-");
+        hilos.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(maxConcurrentes, maxConcurrentes, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), hilos);
+        executor.allowCoreThreadTimeOut(true);
+        
+        meterRegistry.gauge("pagos.circuito.estado", this, p -> p.getEstado().ordinal());
+        meterRegistry.gauge("pagos.bulkhead.en-curso", this, p -> maxConcurrentes - p.cupos.availablePermits());
+        rechazosBulkhead = meterRegistry.counter("pagos.rechazos", "motivo", "bulkhead");
+        rechazosCircuito = meterRegistry.counter("pagos.rechazos", "motivo", "circuito");
+        timeouts = meterRegistry.counter("pagos.rechazos", "motivo", "timeout");
+    }
+    
+    @Override
+    public TransbankInitResponseDTO crear(String buyOrder, String sessionId, double amount, String returnUrl) {
+        return ejecutar("crear", timeoutCrearMs, () -> delegada.crear(buyOrder, sessionId, amount, returnUrl));
+    }
+    
+    @Override
+    public TransbankCommitResponseDTO confirmar(String token) {
+        return ejecutar("confirmar", timeoutConfirmarMs, () -> delegada.confirmar(token));
+    }
+    
+    @Override
+    public TransbankCommitResponseDTO estado(String token) {
+        return ejecutar("estado", timeoutEstadoMs, () -> delegada.estado(token));
+    }
+    
+    @Override
+    public String reembolsar(String token, double amount) {
+        return ejecutar("reembolsar", timeoutConfirmarMs, () -> delegada.reembolsar(token, amount));
+    }
+    
+    // Destroy method del bean: una llamada colgada contra Transbank no debe retrasar el apagado
+    public void cerrar() {
+        executor.shutdownNow();
+    }
+    
+    public EstadoCircuito getEstado() {
+        if (estado == EstadoCircuito.ABIERTO && System.currentTimeMillis() >= abiertoHasta.get()) {
+            return EstadoCircuito.SEMI_ABIERTO;
+        }
+        return estado;
+    }
+    
+    private <T> T ejecutar(String operacion, long timeoutMs, Supplier<T> llamada) {
+        boolean sonda = permitirLlamada();
+        
+        boolean conCupo;
+        try {
+            conCupo = cupos.tryAcquire(esperaCupoMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            conCupo = false;
+        }
+        if (!conCupo) {
+            liberarSonda(sonda);
+            rechazosBulkhead.increment();
+            throw new ServiceUnavailableException("La pasarela de pago está saturada, intenta nuevamente", 1L);
+        }
+        
+        // El cupo se libera cuando termina la llamada real, no al vencer el timeout:
+        // así el bulkhead acota las conexiones que de verdad siguen abiertas contra Transbank
+        CompletableFuture<T> futuro = CompletableFuture.supplyAsync(llamada, executor);
+        futuro.whenComplete((resultado, error) -> cupos.release());
+        
+        try {
+            T resultado = futuro.get(timeoutMs, TimeUnit.MILLISECONDS);
+            registrarExito();
+            return resultado;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            registrarFallo();
+            throw new ServiceUnavailableException("Tiempo de espera agotado en la pasarela de pago (" + operacion + ")");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            registrarFallo();
+            throw new ServiceUnavailableException("Llamada a la pasarela de pago interrumpida (" + operacion + ")");
+        } catch (ExecutionException e) {
+            // Un rechazo de la solicitud prueba que Transbank responde: no abre el circuito, y si era
+            // la sonda lo cierra. Así un token basura repetido no deja a todos sin pagos
+            if (e.getCause() instanceof SolicitudPagoInvalidaException rechazo) {
+                registrarExito();
+                throw rechazo;
+            }
+            registrarFallo();
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+    
+    private boolean permitirLlamada() {
+        if (estado == EstadoCircuito.CERRADO) {
+            return false;
+        }
+        long restanteMs = abiertoHasta.get() - System.currentTimeMillis();
+        // Semi-abierto: pasa una sola llamada de prueba; el resto sigue fallando rápido
+        if (restanteMs <= 0 && sondaEnCurso.compareAndSet(false, true)) {
+            estado = EstadoCircuito.SEMI_ABIERTO;
+            return true;
+        }
+        rechazosCircuito.increment();
+        throw new ServiceUnavailableException("La pasarela de pago no está disponible, intenta más tarde",
+                Math.max(1L, TimeUnit.MILLISECONDS.toSeconds(Math.max(restanteMs, 0)) + 1));
+    }
+    
+    private void liberarSonda(boolean sonda) {
+        if (sonda) {
+            sondaEnCurso.set(false);
+        }
+    }
+    
+    private void registrarExito() {
+        fallosConsecutivos.set(0);
+        if (estado != EstadoCircuito.CERRADO) {
+            estado = EstadoCircuito.CERRADO;
+            sondaEnCurso.set(false);
+        }
+    }
+    
+    private void registrarFallo() {
+        if (estado == EstadoCircuito.SEMI_ABIERTO || fallosConsecutivos.incrementAndGet() >= umbralFallos) {
+            abiertoHasta.set(System.currentTimeMillis() + aperturaMs);
+            estado = EstadoCircuito.ABIERTO;
+            fallosConsecutivos.set(0);
+            sondaEnCurso.set(false);
+        }
+    }
+}
@@ -7,53 +7,54 @@ import cl.levelup.shop.entity.*;
 import cl.levelup.shop.entity.enums.EstadoCarrito;
 import cl.levelup.shop.entity.enums.EstadoPedido;
 import cl.levelup.shop.exception.BadRequestException;
-import cl.levelup.shop.exception.InsufficientStockException;
 import cl.levelup.shop.exception.ResourceNotFoundException;
 import cl.levelup.shop.repository.*;
+import cl.levelup.shop.repository.projection.CarritoItemResumen;
+import cl.levelup.shop.repository.projection.PedidoItemVista;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class PedidoService {
     
+    private static final int TAMANO_LOTE_IN = 500;
+    
     private final PedidoRepository pedidoRepository;
     private final PedidoItemRepository pedidoItemRepository;
     private final UsuarioRepository usuarioRepository;
-    private final ProductoRepository productoRepository;
     private final CarritoRepository carritoRepository;
     private final CarritoItemRepository carritoItemRepository;
     private final ProductoService productoService;
+    private final CarritoStore carritoStore;
     
     @Transactional(readOnly = true)
     public List<PedidoResponseDTO> obtenerTodos() {
-        return pedidoRepository.findAll().stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        return convertirAResponse(pedidoRepository.findAllConUsuario());
     }
     
     @Transactional(readOnly = true)
     public List<PedidoResponseDTO> obtenerPorUsuario(Long usuarioId) {
-        return pedidoRepository.findByUsuarioIdOrderByFechaPedidoDesc(usuarioId).stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        return convertirAResponse(pedidoRepository.findByUsuarioIdConUsuario(usuarioId));
     }
     
     @Transactional(readOnly = true)
     public List<PedidoResponseDTO> obtenerPorEstado(EstadoPedido estado) {
-        return pedidoRepository.findByEstado(estado).stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        return convertirAResponse(pedidoRepository.findByEstadoConUsuario(estado));
     }
     
     @Transactional(readOnly = true)
     public PedidoResponseDTO obtenerPorId(Long id) {
-        Pedido pedido = pedidoRepository.findById(id)
+        Pedido pedido = pedidoRepository.findConUsuarioById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Pedido no encontrado: " + id));
         return convertirAResponse(pedido);
     }
@@ -63,30 +64,40 @@ public class PedidoService {
         Usuario usuario = usuarioRepository.findById(usuarioId)
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado: " + usuarioId));
         
+        // Los cambios del carrito que aún están solo en memoria se escriben dentro de esta transacción,
+        // y el carrito en memoria queda congelado hasta que esta transacción termine
+        carritoStore.cerrarParaCheckout(usuarioId);
+        
         // Buscar carrito activo
         Carrito carrito = carritoRepository.findByUsuarioIdAndEstado(usuarioId, EstadoCarrito.ACTIVO)
                 .orElseThrow(() -> new BadRequestException("No hay carrito activo para el usuario"));
         
-        List<CarritoItem> items = carritoItemRepository.findByCarritoId(carrito.getId());
+        // Proyección sin entidades: los productos se cargan recién con el bloqueo, no antes con datos viejos
+        List<CarritoItemResumen> items = carritoItemRepository.findResumenByCarritoId(carrito.getId());
         
         if (items.isEmpty()) {
             throw new BadRequestException("El carrito está vacío");
         }
         
-        // Validar stock y calcular total
+        Map<Long, Integer> cantidadesPorProducto = new LinkedHashMap<>();
+        for (CarritoItemResumen item : items) {
+            cantidadesPorProducto.merge(item.productoId(), item.cantidad(), Integer::sum);
+        }
+        Map<Long, Producto> productos = productoService.bloquearParaCheckout(cantidadesPorProducto.keySet());
+        
+        // Validar y calcular total
         BigDecimal total = BigDecimal.ZERO;
-        for (CarritoItem item : items) {
-            Producto producto = item.getProducto();
+        for (CarritoItemResumen item : items) {
+            Producto producto = productos.get(item.productoId());
             if (!producto.getActivo()) {
                 throw new BadRequestException("El producto " + producto.getNombre() + " no está disponible");
             }
-            if (producto.getStock() < item.getCantidad()) {
-                throw new InsufficientStockException("Stock insuficiente para " + producto.getNombre());
-            }
-            BigDecimal subtotal = item.getPrecioUnitario().multiply(BigDecimal.valueOf(item.getCantidad()));
+            BigDecimal subtotal = item.precioUnitario().multiply(BigDecimal.valueOf(item.cantidad()));
             total = total.add(subtotal);
         }
         
+        productoService.descontarStock(productos, cantidadesPorProducto);
+        
         // Crear pedido
         Pedido pedido = Pedido.builder()
                 .usuario(usuario)
@@ -97,27 +108,27 @@ public class PedidoService {
         
         Pedido pedidoGuardado = pedidoRepository.save(pedido);
         
-        // Crear items del pedido y actualizar stock
-        for (CarritoItem carritoItem : items) {
+        // Crear items del pedido
+        List<PedidoItem> pedidoItems = new ArrayList<>(items.size());
+        for (CarritoItemResumen item : items) {
             PedidoItem pedidoItem = PedidoItem.builder()
                     .pedido(pedidoGuardado)
-                    .producto(carritoItem.getProducto())
-                    .cantidad(carritoItem.getCantidad())
-                    .precioUnitario(carritoItem.getPrecioUnitario())
-                    .subtotal(carritoItem.getPrecioUnitario().multiply(BigDecimal.valueOf(carritoItem.getCantidad())))
+                    .producto(productos.get(item.productoId()))
+                    .cantidad(item.cantidad())
+                    .precioUnitario(item.precioUnitario())
+                    .subtotal(item.precioUnitario().multiply(BigDecimal.valueOf(item.cantidad())))
                     .build();
             
-            pedidoItemRepository.save(pedidoItem);
-            
-            // Descontar stock
-            productoService.actualizarStock(carritoItem.getProducto().getId(), -carritoItem.getCantidad());
+            pedidoItems.add(pedidoItem);
         }
+        // Con ids de secuencia los INSERT se envían en lote al hacer flush
+        pedidoItemRepository.saveAll(pedidoItems);
         
         // Marcar carrito como comprado
         carrito.setEstado(EstadoCarrito.COMPRADO);
         carritoRepository.save(carrito);
         
-        return convertirAResponse(pedidoGuardado);
+        return convertirAResponse(pedidoGuardado, pedidoItems);
     }
     
     @Transactional
@@ -129,23 +140,26 @@ public class PedidoService {
             throw new BadRequestException("El pedido debe tener al menos un item");
         }
         
+        Map<Long, Integer> cantidadesPorProducto = new LinkedHashMap<>();
+        for (var itemRequest : request.items()) {
+            cantidadesPorProducto.merge(itemRequest.productoId(), itemRequest.cantidad(), Integer::sum);
+        }
+        Map<Long, Producto> productos = productoService.bloquearParaCheckout(cantidadesPorProducto.keySet());
+        
         // Validar y calcular total
         BigDecimal total = BigDecimal.ZERO;
         for (var itemRequest : request.items()) {
-            Producto producto = productoRepository.findById(itemRequest.productoId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado: " + itemRequest.productoId()));
-            
+            Producto producto = productos.get(itemRequest.productoId());
             if (!producto.getActivo()) {
                 throw new BadRequestException("El producto " + producto.getNombre() + " no está disponible");
             }
-            if (producto.getStock() < itemRequest.cantidad()) {
-                throw new InsufficientStockException("Stock insuficiente para " + producto.getNombre());
-            }
             
             BigDecimal subtotal = itemRequest.precioUnitario().multiply(BigDecimal.valueOf(itemRequest.cantidad()));
             total = total.add(subtotal);
         }
         
+        productoService.descontarStock(productos, cantidadesPorProducto);
+        
         // Crear pedido
         Pedido pedido = Pedido.builder()
                 .usuario(usuario)
@@ -157,35 +171,33 @@ public class PedidoService {
         Pedido pedidoGuardado = pedidoRepository.save(pedido);
         
         // Crear items del pedido
+        List<PedidoItem> pedidoItems = new ArrayList<>(request.items().size());
         for (var itemRequest : request.items()) {
-            Producto producto = productoRepository.findById(itemRequest.productoId()).get();
-            
             PedidoItem pedidoItem = PedidoItem.builder()
                     .pedido(pedidoGuardado)
-                    .producto(producto)
+                    .producto(productos.get(itemRequest.productoId()))
                     .cantidad(itemRequest.cantidad())
                     .precioUnitario(itemRequest.precioUnitario())
                     .subtotal(itemRequest.precioUnitario().multiply(BigDecimal.valueOf(itemRequest.cantidad())))
                     .build();
             
-            pedidoItemRepository.save(pedidoItem);
-            
-            // Descontar stock
-            productoService.actualizarStock(producto.getId(), -itemRequest.cantidad());
+            pedidoItems.add(pedidoItem);
         }
+        pedidoItemRepository.saveAll(pedidoItems);
         
-        return convertirAResponse(pedidoGuardado);
+        return convertirAResponse(pedidoGuardado, pedidoItems);
     }
     
     @Transactional
     public PedidoResponseDTO actualizarEstado(Long id, EstadoPedido nuevoEstado) {
-        Pedido pedido = pedidoRepository.findById(id)
+        Pedido pedido = pedidoRepository.findConUsuarioById(id)
                 .orElseThrow(() -> new RuntimeException("Pedido no encontrado: " + id));
         
         // Si se cancela un pedido pagado, devolver stock
         if (pedido.getEstado() == EstadoPedido.PAGADO && nuevoEstado == EstadoPedido.CANCELADO) {
             List<PedidoItem> items = pedidoItemRepository.findByPedidoId(id);
             for (PedidoItem item : items) {
+                // getId() de la referencia LAZY no inicializa el producto: no hay un SELECT por item
                 productoService.actualizarStock(item.getProducto().getId(), item.getCantidad());
             }
         }
@@ -195,15 +207,45 @@ public class PedidoService {
         return convertirAResponse(actualizado);
     }
     
-    private PedidoResponseDTO convertirAResponse(Pedido pedido) {
-        List<PedidoItem> items = pedidoItemRepository.findByPedidoId(pedido.getId());
+    private List<PedidoResponseDTO> convertirAResponse(List<Pedido> pedidos) {
+        if (pedidos.isEmpty()) {
+            return List.of();
+        }
+        
+        // Una consulta IN por lote para los items de todos los pedidos, en vez de una por pedido
+        List<Long> pedidoIds = pedidos.stream().map(Pedido::getId).collect(Collectors.toList());
+        Map<Long, List<PedidoItemResponseDTO>> itemsPorPedido = new HashMap<>();
+        for (int i = 0; i < pedidoIds.size(); i += TAMANO_LOTE_IN) {
+            List<Long> lote = pedidoIds.subList(i, Math.min(i + TAMANO_LOTE_IN, pedidoIds.size()));
+            for (PedidoItemVista item : pedidoItemRepository.findVistaByPedidoIdIn(lote)) {
+                itemsPorPedido.computeIfAbsent(item.pedidoId(), k -> new ArrayList<>()).add(convertirItemAResponse(item));
+            }
+        }
         
+        return pedidos.stream()
+                .map(pedido -> construirResponse(pedido, itemsPorPedido.getOrDefault(pedido.getId(), List.of())))
+                .collect(Collectors.toList());
+    }
+    
+    private PedidoResponseDTO convertirAResponse(Pedido pedido) {
+        List<PedidoItemResponseDTO> items = pedidoItemRepository.findVistaByPedidoIdIn(List.of(pedido.getId())).stream()
+                .map(this::convertirItemAResponse)
+                .collect(Collectors.toList());
+        return construirResponse(pedido, items);
+    }
+    
+    // Para pedidos recién creados: los productos ya están cargados por el bloqueo del checkout.
+    // Visible en el paquete para los benchmarks de src/jmh
+    PedidoResponseDTO convertirAResponse(Pedido pedido, List<PedidoItem> items) {
         List<PedidoItemResponseDTO> itemsDTO = items.stream()
                 .map(this::convertirItemAResponse)
                 .collect(Collectors.toList());
-        
-        int totalItems = items.stream()
-                .mapToInt(PedidoItem::getCantidad)
+        return construirResponse(pedido, itemsDTO);
+    }
+    
+    private PedidoResponseDTO construirResponse(Pedido pedido, List<PedidoItemResponseDTO> itemsDTO) {
+        int totalItems = itemsDTO.stream()
+                .mapToInt(PedidoItemResponseDTO::cantidad)
                 .sum();
         
         return new PedidoResponseDTO(
@@ -220,6 +262,19 @@ public class PedidoService {
         );
     }
     
+    private PedidoItemResponseDTO convertirItemAResponse(PedidoItemVista item) {
+        return new PedidoItemResponseDTO(
+                item.id(),
+                item.productoId(),
+                item.productoNombre(),
+                item.productoCode(),
+                item.productoImagen(),
+                item.cantidad(),
+                item.precioUnitario(),
+                item.subtotal()
+        );
+    }
+    
     private PedidoItemResponseDTO convertirItemAResponse(PedidoItem item) {
         return new PedidoItemResponseDTO(
                 item.getId(),
@@ -1,20 +1,35 @@
 package cl.levelup.shop.service;
 
 import cl.levelup.shop.dto.request.ProductoRequestDTO;
+import cl.levelup.shop.dto.response.FiltroProductosResponseDTO;
+import cl.levelup.shop.dto.response.PaginaResponseDTO;
 import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import cl.levelup.shop.dto.response.SugerenciaDTO;
 import cl.levelup.shop.entity.Categoria;
 import cl.levelup.shop.entity.Producto;
 import cl.levelup.shop.exception.BadRequestException;
 import cl.levelup.shop.exception.InsufficientStockException;
 import cl.levelup.shop.exception.ResourceNotFoundException;
 import cl.levelup.shop.repository.CategoriaRepository;
+import cl.levelup.shop.repository.PedidoItemRepository;
 import cl.levelup.shop.repository.ProductoRepository;
+import cl.levelup.shop.repository.projection.VentasProducto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -22,49 +37,136 @@ public class ProductoService {
     
     private final ProductoRepository productoRepository;
     private final CategoriaRepository categoriaRepository;
+    private final CatalogoCache catalogoCache;
+    private final BusquedaIndex busquedaIndex;
+    private final SugerenciasIndex sugerenciasIndex;
+    private final CatalogoSerializado catalogoSerializado;
+    private final PedidoItemRepository pedidoItemRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${catalogo.pagina.tamano-defecto}")
+    private int tamanoPaginaDefecto;
+    
+    @Value("${catalogo.pagina.tamano-maximo}")
+    private int tamanoPaginaMaximo;
+    
+    @Value("${catalogo.sugerencias.limite-defecto}")
+    private int limiteSugerenciasDefecto;
+    
+    @Value("${catalogo.sugerencias.limite-maximo}")
+    private int limiteSugerenciasMaximo;
+    
+    public VersionCatalogo versionCatalogo() {
+        return catalogoCache.versionActual();
+    }
+    
+    public VersionCatalogo versionListados() {
+        return catalogoCache.versionListados();
+    }
     
     @Transactional(readOnly = true)
     public List<ProductoResponseDTO> obtenerTodos() {
-        return productoRepository.findAll().stream()
+        // JOIN FETCH: convertirAResponse lee la categoría y con findAll() sería un SELECT extra por producto
+        return productoRepository.findAllConCategoria().stream()
                 .map(this::convertirAResponse)
                 .collect(Collectors.toList());
     }
     
-    @Transactional(readOnly = true)
     public List<ProductoResponseDTO> obtenerActivos() {
-        return productoRepository.findByActivoTrue().stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        return catalogo().activos();
+    }
+    
+    public RespuestaSerializada obtenerActivosSerializados() {
+        ListadosCatalogo listados = catalogoCache.listados(this::cargarCatalogo);
+        return catalogoSerializado.obtener(listados.revision(), "activos", listados.snapshot()::activos);
+    }
+    
+    public RespuestaSerializada obtenerPorCategoriaSerializados(String categoriaId) {
+        ListadosCatalogo listados = catalogoCache.listados(this::cargarCatalogo);
+        CatalogoSnapshot catalogo = listados.snapshot();
+        // Solo se guardan bytes de categorías existentes: un id arbitrario no agrega variantes al caché
+        String variante = catalogo.activosPorCategoria().containsKey(categoriaId) ? "categoria:" + categoriaId : "vacio";
+        return catalogoSerializado.obtener(listados.revision(), variante, () -> catalogo.activosDeCategoria(categoriaId));
+    }
+    
+    public RespuestaSerializada buscarSerializados(String keyword) {
+        return catalogoSerializado.sinCache(buscar(keyword));
+    }
+    
+    public PaginaResponseDTO<ProductoResponseDTO> obtenerPagina(Long cursor, Integer size) {
+        int tamano = size == null ? tamanoPaginaDefecto : Math.max(1, Math.min(size, tamanoPaginaMaximo));
+        List<ProductoResponseDTO> activos = catalogo().activos();
+        
+        // Keyset sobre id: los activos del snapshot vienen ordenados por id
+        int desde = cursor == null ? 0 : primeraPosicionMayorA(activos, cursor);
+        int hasta = Math.min(desde + tamano, activos.size());
+        List<ProductoResponseDTO> items = activos.subList(desde, hasta);
+        
+        boolean tieneMas = hasta < activos.size();
+        Long siguienteCursor = tieneMas ? items.get(items.size() - 1).id() : null;
+        return new PaginaResponseDTO<>(items, siguienteCursor, tieneMas);
     }
     
     @Transactional(readOnly = true)
+    public void exportarActivos(OutputStream salida) {
+        try (Stream<Producto> productos = productoRepository.streamActivos()) {
+            productos.forEach(producto -> {
+                try {
+                    salida.write(objectMapper.writeValueAsBytes(convertirAResponse(producto)));
+                    salida.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                // Sin esto el contexto de persistencia retiene todo el catálogo
+                entityManager.detach(producto);
+            });
+        }
+    }
+    
     public ProductoResponseDTO obtenerPorId(Long id) {
-        Producto producto = productoRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado: " + id));
-        return convertirAResponse(producto);
+        ProductoResponseDTO producto = catalogo().porId().get(id);
+        if (producto == null) {
+            throw new ResourceNotFoundException("Producto no encontrado: " + id);
+        }
+        return producto;
     }
     
-    @Transactional(readOnly = true)
     public ProductoResponseDTO obtenerPorCode(String code) {
-        Producto producto = productoRepository.findByCode(code)
-                .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado con código: " + code));
-        return convertirAResponse(producto);
+        ProductoResponseDTO producto = catalogo().porCode().get(code);
+        if (producto == null) {
+            throw new ResourceNotFoundException("Producto no encontrado con código: " + code);
+        }
+        return producto;
     }
     
-    @Transactional(readOnly = true)
     public List<ProductoResponseDTO> obtenerPorCategoria(String categoriaId) {
-        return productoRepository.findActivosByCategoriaId(categoriaId).stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        return catalogo().activosDeCategoria(categoriaId);
     }
     
-    @Transactional(readOnly = true)
     public List<ProductoResponseDTO> buscar(String keyword) {
-        return productoRepository.buscarProductos(keyword).stream()
-                .map(this::convertirAResponse)
+        // La carga toma el snapshot vigente dentro del lock del índice, no el leído antes de esperar por él
+        busquedaIndex.cargarSiEsNecesario(() -> catalogo().activos());
+        CatalogoSnapshot catalogo = catalogo();
+        
+        return busquedaIndex.buscar(keyword).stream()
+                .map(catalogo.porId()::get)
+                .filter(producto -> producto != null && Boolean.TRUE.equals(producto.activo()))
                 .collect(Collectors.toList());
     }
     
+    public List<SugerenciaDTO> sugerir(String prefijo, Integer limite) {
+        int tamano = limite == null ? limiteSugerenciasDefecto : Math.max(1, Math.min(limite, limiteSugerenciasMaximo));
+        sugerenciasIndex.cargarSiEsNecesario(() -> catalogo().activos(), this::unidadesVendidas);
+        return sugerenciasIndex.sugerir(prefijo, tamano);
+    }
+    
+    public FiltroProductosResponseDTO filtrar(FiltroFacetas filtro) {
+        FacetasIndex facetas = catalogo().facetas();
+        List<ProductoResponseDTO> items = facetas.filtrar(filtro);
+        return new FiltroProductosResponseDTO(items, items.size(), facetas.contar(filtro));
+    }
+    
     @Transactional
     public ProductoResponseDTO crear(ProductoRequestDTO request) {
         Categoria categoria = categoriaRepository.findById(request.categoriaId())
@@ -90,7 +192,13 @@ public class ProductoService {
                 .build();
         
         Producto guardado = productoRepository.save(producto);
-        return convertirAResponse(guardado);
+        ProductoResponseDTO response = convertirAResponse(guardado);
+        catalogoCache.invalidar();
+        TransaccionUtil.despuesDelCommit(() -> {
+            busquedaIndex.indexar(response);
+            sugerenciasIndex.indexar(response);
+        });
+        return response;
     }
     
     @Transactional
@@ -117,7 +225,13 @@ public class ProductoService {
         }
         
         Producto actualizado = productoRepository.save(producto);
-        return convertirAResponse(actualizado);
+        ProductoResponseDTO response = convertirAResponse(actualizado);
+        catalogoCache.invalidar();
+        TransaccionUtil.despuesDelCommit(() -> {
+            busquedaIndex.indexar(response);
+            sugerenciasIndex.indexar(response);
+        });
+        return response;
     }
     
     @Transactional
@@ -126,23 +240,96 @@ public class ProductoService {
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado: " + id));
         producto.setActivo(false);
         productoRepository.save(producto);
+        catalogoCache.invalidar();
+        TransaccionUtil.despuesDelCommit(() -> {
+            busquedaIndex.remover(id);
+            sugerenciasIndex.remover(id);
+        });
     }
     
     @Transactional
     public void actualizarStock(Long id, Integer cantidad) {
-        Producto producto = productoRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado: " + id));
-        
-        int nuevoStock = producto.getStock() + cantidad;
-        if (nuevoStock < 0) {
+        if (productoRepository.ajustarStock(id, cantidad) == 0) {
+            Producto producto = productoRepository.findById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado: " + id));
             throw new InsufficientStockException("Stock insuficiente para el producto: " + producto.getNombre());
         }
+        // Solo cambia el stock: se parcha el snapshot en vez de recargar el catálogo completo
+        catalogoCache.actualizarStock(Map.of(id, productoRepository.findStockById(id)));
+    }
+    
+    @Transactional
+    public Map<Long, Producto> bloquearParaCheckout(Collection<Long> ids) {
+        Map<Long, Producto> productos = new HashMap<>();
+        for (Producto producto : productoRepository.findAllByIdParaActualizar(ids)) {
+            productos.put(producto.getId(), producto);
+        }
+        for (Long id : ids) {
+            if (!productos.containsKey(id)) {
+                throw new ResourceNotFoundException("Producto no encontrado: " + id);
+            }
+        }
+        return productos;
+    }
+    
+    @Transactional
+    public void descontarStock(Map<Long, Producto> bloqueados, Map<Long, Integer> cantidadesPorProducto) {
+        // Se valida todo antes de modificar: un pedido sin stock suficiente no deja productos a medio descontar
+        for (Map.Entry<Long, Integer> entrada : cantidadesPorProducto.entrySet()) {
+            Producto producto = bloqueados.get(entrada.getKey());
+            if (producto.getStock() < entrada.getValue()) {
+                throw new InsufficientStockException("Stock insuficiente para " + producto.getNombre());
+            }
+        }
         
-        producto.setStock(nuevoStock);
-        productoRepository.save(producto);
+        // Los productos ya están bloqueados: los UPDATE se envían en un lote al hacer flush
+        Map<Long, Integer> stockResultante = new HashMap<>();
+        for (Map.Entry<Long, Integer> entrada : cantidadesPorProducto.entrySet()) {
+            Producto producto = bloqueados.get(entrada.getKey());
+            producto.setStock(producto.getStock() - entrada.getValue());
+            stockResultante.put(producto.getId(), producto.getStock());
+        }
+        // Una venta no recarga el catálogo: el snapshot recibe solo el stock nuevo de estos productos
+        catalogoCache.actualizarStock(stockResultante);
+        Map<Long, Integer> vendidas = Map.copyOf(cantidadesPorProducto);
+        TransaccionUtil.despuesDelCommit(() -> sugerenciasIndex.registrarVentas(vendidas));
+    }
+    
+    private int primeraPosicionMayorA(List<ProductoResponseDTO> productos, Long id) {
+        int bajo = 0;
+        int alto = productos.size();
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (productos.get(medio).id() <= id) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+    
+    private Map<Long, Long> unidadesVendidas() {
+        Map<Long, Long> ventas = new HashMap<>();
+        for (VentasProducto venta : pedidoItemRepository.sumarUnidadesVendidas()) {
+            ventas.put(venta.productoId(), venta.unidades());
+        }
+        return ventas;
+    }
+    
+    private CatalogoSnapshot catalogo() {
+        return catalogoCache.obtener(this::cargarCatalogo);
+    }
+    
+    private CatalogoSnapshot cargarCatalogo(long version) {
+        List<ProductoResponseDTO> productos = productoRepository.findAllConCategoria().stream()
+                .map(this::convertirAResponse)
+                .collect(Collectors.toList());
+        return CatalogoSnapshot.construir(version, productos);
     }
     
-    private ProductoResponseDTO convertirAResponse(Producto producto) {
+    // Visible en el paquete para los benchmarks de src/jmh
+    ProductoResponseDTO convertirAResponse(Producto producto) {
         return new ProductoResponseDTO(
                 producto.getId(),
                 producto.getCode(),
@@ -0,0 +1,299 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.TransbankCommitResponseDTO;
+import cl.levelup.shop.entity.Producto;
+import cl.levelup.shop.entity.enums.EstadoPedido;
+import cl.levelup.shop.exception.SolicitudPagoInvalidaException;
+import cl.levelup.shop.repository.PedidoRepository;
+import cl.levelup.shop.repository.ProductoRepository;
+import cl.levelup.shop.repository.projection.PagoPendiente;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Resuelve los pedidos PENDIENTE con token cuyo usuario nunca volvió a /pagos/confirmar,
+// consultando el estado en Transbank
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReconciliadorPagos {
+    
+    private static final Set<String> ESTADOS_FALLIDOS = Set.of("FAILED", "REVERSED", "NULLIFIED");
+    
+    private final PedidoRepository pedidoRepository;
+    private final ProductoRepository productoRepository;
+    private final PasarelaPago pasarelaPago;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CatalogoCache catalogoCache;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${pagos.reconciliacion.lote}")
+    private int lote;
+    
+    @Value("${pagos.reconciliacion.concurrencia}")
+    private int concurrencia;
+    
+    @Value("${pagos.reconciliacion.consultas-por-segundo}")
+    private int consultasPorSegundo;
+    
+    // Margen para no consultar pagos que el usuario todavía puede estar completando
+    @Value("${pagos.reconciliacion.antiguedad-minima-ms}")
+    private long antiguedadMinimaMs;
+    
+    // Pasado este tiempo desde que se creó la transacción, el token ya no se puede pagar
+    @Value("${pagos.reconciliacion.vida-token-ms}")
+    private long vidaTokenMs;
+    
+    private final AtomicLong proximaConsulta = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong pendientes = new AtomicLong();
+    private final AtomicLong retrasoSegundos = new AtomicLong();
+    
+    private ExecutorService executor;
+    private Counter pagados;
+    private Counter cancelados;
+    private Counter errores;
+    private Timer duracion;
+    
+    @PostConstruct
+    void init() {
+        // Cola acotada: si se llena, el hilo del scheduler ejecuta la consulta y así se frena solo
+        executor = new ThreadPoolExecutor(concurrencia, concurrencia, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(lote), new ThreadPoolExecutor.CallerRunsPolicy());
+        
+        meterRegistry.gauge("pagos.reconciliacion.pendientes", pendientes);
+        meterRegistry.gauge("pagos.reconciliacion.retraso.segundos", retrasoSegundos);
+        pagados = meterRegistry.counter("pagos.reconciliacion.transiciones", "estado", EstadoPedido.PAGADO.name());
+        cancelados = meterRegistry.counter("pagos.reconciliacion.transiciones", "estado", EstadoPedido.CANCELADO.name());
+        errores = meterRegistry.counter("pagos.reconciliacion.errores");
+        duracion = meterRegistry.timer("pagos.reconciliacion.duracion");
+    }
+    
+    @PreDestroy
+    void detener() {
+        executor.shutdownNow();
+    }
+    
+    @Scheduled(fixedDelayString = "${pagos.reconciliacion.intervalo-ms}")
+    public void reconciliar() {
+        duracion.record(() -> {
+            try {
+                reconciliarPendientes();
+            } catch (RuntimeException e) {
+                log.error("Falló la reconciliación de pagos, se reintentará en el próximo ciclo", e);
+            }
+        });
+    }
+    
+    private void reconciliarPendientes() {
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDateTime antesDe = ahora.minus(Duration.ofMillis(antiguedadMinimaMs));
+        long desdeId = 0;
+        long sinResolver = 0;
+        LocalDateTime masAntiguo = null;
+        
+        while (true) {
+            List<PagoPendiente> lotePagos = pedidoRepository.findPagosPendientes(
+                    EstadoPedido.PENDIENTE, desdeId, antesDe, PageRequest.of(0, lote));
+            if (lotePagos.isEmpty()) {
+                break;
+            }
+            
+            List<Resultado> resultados = consultar(lotePagos);
+            aplicar(resultados);
+            
+            for (Resultado resultado : resultados) {
+                if (resultado.nuevoEstado() == null) {
+                    sinResolver++;
+                    LocalDateTime fecha = resultado.pago().fechaPedido();
+                    if (masAntiguo == null || fecha.isBefore(masAntiguo)) {
+                        masAntiguo = fecha;
+                    }
+                }
+            }
+            
+            desdeId = lotePagos.get(lotePagos.size() - 1).id();
+            if (lotePagos.size() < lote) {
+                break;
+            }
+        }
+        
+        pendientes.set(sinResolver);
+        retrasoSegundos.set(masAntiguo == null ? 0 : Duration.between(masAntiguo, ahora).getSeconds());
+    }
+    
+    private List<Resultado> consultar(List<PagoPendiente> lotePagos) {
+        List<CompletableFuture<Resultado>> consultas = new ArrayList<>(lotePagos.size());
+        for (PagoPendiente pago : lotePagos) {
+            consultas.add(CompletableFuture.supplyAsync(() -> consultarEstado(pago), executor));
+        }
+        
+        List<Resultado> resultados = new ArrayList<>(consultas.size());
+        for (CompletableFuture<Resultado> consulta : consultas) {
+            resultados.add(consulta.join());
+        }
+        return resultados;
+    }
+    
+    private Resultado consultarEstado(PagoPendiente pago) {
+        // Un pago abandonado queda INITIALIZED y, al vencer el token, Transbank deja de reconocerlo:
+        // en ambos casos ya no se va a pagar, así que se cancela en vez de consultarlo en cada ciclo
+        boolean tokenVencido = System.currentTimeMillis() - inicioPago(pago) >= vidaTokenMs;
+        try {
+            esperarTurno();
+            TransbankCommitResponseDTO estado = pasarelaPago.estado(pago.transbankToken());
+            if ("AUTHORIZED".equals(estado.status())) {
+                return new Resultado(pago, EstadoPedido.PAGADO, estado.authorizationCode());
+            }
+            if (ESTADOS_FALLIDOS.contains(estado.status()) || (tokenVencido && "INITIALIZED".equals(estado.status()))) {
+                return new Resultado(pago, EstadoPedido.CANCELADO, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SolicitudPagoInvalidaException e) {
+            if (tokenVencido) {
+                return new Resultado(pago, EstadoPedido.CANCELADO, null);
+            }
+            errores.increment();
+            log.warn("Transbank rechazó la consulta del pedido {}: {}", pago.id(), e.getMessage());
+        } catch (RuntimeException e) {
+            errores.increment();
+            log.warn("No se pudo consultar el estado del pedido {}: {}", pago.id(), e.getMessage());
+        }
+        return new Resultado(pago, null, null);
+    }
+    
+    private long inicioPago(PagoPendiente pago) {
+        // El buyOrder termina en el instante en que se creó la transacción: ORDER-<id>-<epoch ms>
+        String buyOrder = pago.transbankBuyOrder();
+        if (buyOrder != null) {
+            try {
+                return Long.parseLong(buyOrder.substring(buyOrder.lastIndexOf('-') + 1));
+            } catch (NumberFormatException e) {
+                // Formato anterior: se usa la fecha del pedido, que es previa a la transacción
+            }
+        }
+        return pago.fechaPedido().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    private void esperarTurno() throws InterruptedException {
+        // Limitador de tasa: cada consulta reserva el siguiente intervalo libre
+        long intervalo = TimeUnit.SECONDS.toNanos(1) / consultasPorSegundo;
+        long ahora = System.nanoTime();
+        long turno = Math.max(proximaConsulta.getAndAccumulate(ahora, (previo, t) -> Math.max(previo, t) + intervalo), ahora);
+        long espera = turno - ahora;
+        if (espera > 0) {
+            TimeUnit.NANOSECONDS.sleep(espera);
+        }
+    }
+    
+    private void aplicar(List<Resultado> resultados) {
+        List<Resultado> transiciones = resultados.stream().filter(r -> r.nuevoEstado() != null).toList();
+        if (transiciones.isEmpty()) {
+            return;
+        }
+        
+        int[] aplicados = transactionTemplate.execute(status -> {
+            // Se bloquean los pedidos que siguen PENDIENTE: una confirmación concurrente ya aplicada se respeta
+            Set<Long> siguePendiente = bloquearPendientes(transiciones);
+            LocalDateTime fechaPago = LocalDateTime.now();
+            List<Object[]> pagos = new ArrayList<>();
+            List<Object[]> cancelaciones = new ArrayList<>();
+            for (Resultado resultado : transiciones) {
+                Long id = resultado.pago().id();
+                if (!siguePendiente.contains(id)) {
+                    continue;
+                }
+                if (resultado.nuevoEstado() == EstadoPedido.PAGADO) {
+                    pagos.add(new Object[]{fechaPago, resultado.codigoAutorizacion(), id});
+                } else {
+                    cancelaciones.add(new Object[]{id});
+                }
+            }
+            
+            if (!pagos.isEmpty()) {
+                jdbcTemplate.batchUpdate(
+                        "UPDATE pedidos SET estado = 'PAGADO', fecha_pago = ?, codigo_autorizacion = ? WHERE id = ?", pagos);
+            }
+            if (!cancelaciones.isEmpty()) {
+                // El stock se descontó al crear el pedido: un pago fallido lo devuelve
+                devolverStock(cancelaciones);
+                jdbcTemplate.batchUpdate("UPDATE pedidos SET estado = 'CANCELADO' WHERE id = ?", cancelaciones);
+            }
+            return new int[]{pagos.size(), cancelaciones.size()};
+        });
+        
+        // Solo se cuentan las transiciones confirmadas: un rollback no debe aparecer en las métricas
+        pagados.increment(aplicados[0]);
+        cancelados.increment(aplicados[1]);
+    }
+    
+    // Se suman las unidades de todos los pedidos cancelados y los productos se bloquean con la misma
+    // consulta que el checkout, en orden de id: un lote nunca toma las filas en un orden que cruce con otro checkout
+    private void devolverStock(List<Object[]> cancelaciones) {
+        List<Object> ids = new ArrayList<>(cancelaciones.size());
+        for (Object[] cancelacion : cancelaciones) {
+            ids.add(cancelacion[0]);
+        }
+        String marcadores = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Map<Long, Integer> devueltas = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT producto_id, SUM(cantidad) AS cantidad FROM pedido_items WHERE pedido_id IN (" + marcadores + ") " +
+                "GROUP BY producto_id",
+                rs -> {
+                    devueltas.put(rs.getLong("producto_id"), rs.getInt("cantidad"));
+                }, ids.toArray());
+        if (devueltas.isEmpty()) {
+            return;
+        }
+        
+        // Un incremento por producto; los UPDATE salen en un lote al confirmar, ordenados por id
+        Map<Long, Integer> stockResultante = new HashMap<>();
+        for (Producto producto : productoRepository.findAllByIdParaActualizar(devueltas.keySet())) {
+            producto.setStock(producto.getStock() + devueltas.get(producto.getId()));
+            stockResultante.put(producto.getId(), producto.getStock());
+        }
+        catalogoCache.actualizarStock(stockResultante);
+    }
+    
+    private Set<Long> bloquearPendientes(List<Resultado> transiciones) {
+        List<Object> ids = new ArrayList<>(transiciones.size());
+        for (Resultado resultado : transiciones) {
+            ids.add(resultado.pago().id());
+        }
+        String marcadores = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM pedidos WHERE id IN (" + marcadores + ") AND estado = 'PENDIENTE' ORDER BY id FOR UPDATE",
+                Long.class, ids.toArray()));
+    }
+    
+    private record Resultado(PagoPendiente pago, EstadoPedido nuevoEstado, String codigoAutorizacion) {
+    }
+}
@@ -0,0 +1,8 @@
+package cl.levelup.shop.service;
+
+// JSON listo para escribir en la respuesta y, si se precalculó, su versión gzip
+public record RespuestaSerializada(
+        byte[] json,
+        byte[] gzip
+) {
+}
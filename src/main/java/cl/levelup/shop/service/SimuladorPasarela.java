@@ -0,0 +1,141 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.TransbankCommitResponseDTO;
+import cl.levelup.shop.dto.TransbankInitResponseDTO;
+import cl.levelup.shop.exception.BadRequestException;
+import cl.levelup.shop.exception.SolicitudPagoInvalidaException;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Pasarela en proceso para pruebas de carga sin red: latencia log-normal, fallas inyectadas
+// y proporción configurable de pagos autorizados
+public class SimuladorPasarela implements PasarelaPago {
+    
+    // z de la normal estándar para el percentil 99
+    private static final double Z_P99 = 2.326;
+    
+    private final double latenciaMedianaMs;
+    private final double sigma;
+    private final double tasaFallos;
+    private final double tasaAutorizacion;
+    private final long retencionMs;
+    
+    private final Map<String, Transaccion> transacciones = new ConcurrentHashMap<>();
+    private final AtomicLong proximaPurga = new AtomicLong();
+    
+    public SimuladorPasarela(long latenciaMedianaMs, long latenciaP99Ms, double tasaFallos, double tasaAutorizacion,
+                             long retencionMs) {
+        this.latenciaMedianaMs = latenciaMedianaMs;
+        this.sigma = latenciaMedianaMs > 0 && latenciaP99Ms > latenciaMedianaMs
+                ? Math.log((double) latenciaP99Ms / latenciaMedianaMs) / Z_P99
+                : 0.0;
+        this.tasaFallos = tasaFallos;
+        this.tasaAutorizacion = tasaAutorizacion;
+        this.retencionMs = retencionMs;
+    }
+    
+    @Override
+    public TransbankInitResponseDTO crear(String buyOrder, String sessionId, double amount, String returnUrl) {
+        simularLlamada("Error al iniciar la transacción: ");
+        purgarSiCorresponde();
+        String token = UUID.randomUUID().toString().replace("-", "") + UUID.randomUUID().toString().replace("-", "");
+        transacciones.put(token, new Transaccion(buyOrder, sessionId, amount, "INITIALIZED", null, System.currentTimeMillis()));
+        // La "página de pago" es directamente la URL de retorno: enviar token_ws ahí completa el flujo
+        return new TransbankInitResponseDTO(token, returnUrl);
+    }
+    
+    @Override
+    public TransbankCommitResponseDTO confirmar(String token) {
+        simularLlamada("Error al confirmar la transacción: ");
+        Transaccion transaccion = buscar(token, "Error al confirmar la transacción: ");
+        if (!"INITIALIZED".equals(transaccion.status())) {
+            throw new SolicitudPagoInvalidaException("Error al confirmar la transacción: Transaction already locked by another process");
+        }
+        
+        Transaccion confirmada = ThreadLocalRandom.current().nextDouble() < tasaAutorizacion
+                ? transaccion.conEstado("AUTHORIZED", String.valueOf(ThreadLocalRandom.current().nextInt(100000, 999999)))
+                : transaccion.conEstado("FAILED", null);
+        // replace compara con el valor leído: de dos commits concurrentes del mismo token solo uno gana
+        if (!transacciones.replace(token, transaccion, confirmada)) {
+            throw new SolicitudPagoInvalidaException("Error al confirmar la transacción: Transaction already locked by another process");
+        }
+        return convertirAResponse(confirmada);
+    }
+    
+    @Override
+    public TransbankCommitResponseDTO estado(String token) {
+        simularLlamada("Error al obtener el estado de la transacción: ");
+        return convertirAResponse(buscar(token, "Error al obtener el estado de la transacción: "));
+    }
+    
+    @Override
+    public String reembolsar(String token, double amount) {
+        simularLlamada("Error al reembolsar la transacción: ");
+        Transaccion transaccion = buscar(token, "Error al reembolsar la transacción: ");
+        if (!"AUTHORIZED".equals(transaccion.status())
+                || !transacciones.replace(token, transaccion, transaccion.conEstado("REVERSED", transaccion.authorizationCode()))) {
+            throw new SolicitudPagoInvalidaException("Error al reembolsar la transacción: Transaction is not authorized");
+        }
+        return "REVERSED";
+    }
+    
+    private void simularLlamada(String mensajeError) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long latenciaMs = Math.round(latenciaMedianaMs * Math.exp(sigma * random.nextGaussian()));
+        try {
+            Thread.sleep(latenciaMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BadRequestException(mensajeError + "interrumpida");
+        }
+        if (random.nextDouble() < tasaFallos) {
+            throw new BadRequestException(mensajeError + "falla simulada");
+        }
+    }
+    
+    // Como Webpay, el simulador olvida las transacciones viejas: consultarlas responde "not found"
+    private void purgarSiCorresponde() {
+        long ahora = System.currentTimeMillis();
+        long proxima = proximaPurga.get();
+        if (ahora >= proxima && proximaPurga.compareAndSet(proxima, ahora + Math.max(1000, retencionMs / 10))) {
+            transacciones.values().removeIf(transaccion -> transaccion.creadaEn() < ahora - retencionMs);
+        }
+    }
+    
+    private Transaccion buscar(String token, String mensajeError) {
+        Transaccion transaccion = transacciones.get(token);
+        if (transaccion == null) {
+            throw new SolicitudPagoInvalidaException(mensajeError + "Transaction not found");
+        }
+        return transaccion;
+    }
+    
+    private TransbankCommitResponseDTO convertirAResponse(Transaccion transaccion) {
+        boolean autorizada = "AUTHORIZED".equals(transaccion.status());
+        return new TransbankCommitResponseDTO(
+            transaccion.buyOrder(),
+            transaccion.sessionId(),
+            transaccion.amount(),
+            transaccion.status(),
+            transaccion.authorizationCode(),
+            "VD",
+            autorizada ? "0" : "-1",
+            LocalDateTime.now(),
+            0,
+            "6623"
+        );
+    }
+    
+    private record Transaccion(String buyOrder, String sessionId, double amount, String status, String authorizationCode,
+                               long creadaEn) {
+        
+        Transaccion conEstado(String nuevoStatus, String codigo) {
+            return new Transaccion(buyOrder, sessionId, amount, nuevoStatus, codigo, creadaEn);
+        }
+    }
+}
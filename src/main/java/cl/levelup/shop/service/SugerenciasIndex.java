@@ -0,0 +1,199 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import cl.levelup.shop.dto.response.SugerenciaDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+// Autocompletado por prefijo sobre nombre, código y marca. Cada producto aporta su nombre completo
+// normalizado y cada sufijo que empieza en una palabra ("mouse logitech g502", "logitech g502", "g502"),
+// así "g50" encuentra el producto aunque no sea la primera palabra del nombre
+@Component
+public class SugerenciasIndex {
+    
+    private static final int MAX_TERMINOS_POR_PREFIJO = 2048;
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // término -> ids de productos; TreeMap para recorrer por rango todos los términos con un prefijo
+    private final TreeMap<String, Set<Long>> terminos = new TreeMap<>();
+    private final Map<Long, Set<String>> terminosPorProducto = new HashMap<>();
+    private final Map<Long, SugerenciaDTO> sugerencias = new HashMap<>();
+    
+    // Unidades vendidas por producto: se actualiza sin el lock de escritura al confirmar cada pedido
+    private final Map<Long, Long> popularidad = new ConcurrentHashMap<>();
+    private volatile boolean cargado = false;
+    
+    public void cargarSiEsNecesario(Supplier<Collection<ProductoResponseDTO>> activos,
+                                    Supplier<Map<Long, Long>> ventas) {
+        if (cargado) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (cargado) {
+                return;
+            }
+            terminos.clear();
+            terminosPorProducto.clear();
+            sugerencias.clear();
+            for (ProductoResponseDTO producto : activos.get()) {
+                agregar(producto);
+            }
+            popularidad.clear();
+            popularidad.putAll(ventas.get());
+            cargado = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void indexar(ProductoResponseDTO producto) {
+        // cargado se revisa con el lock tomado: si una carga está en curso se espera a que termine
+        // y el cambio se aplica encima, en vez de perderse por haber mirado el flag antes
+        lock.writeLock().lock();
+        try {
+            if (!cargado) {
+                return;
+            }
+            quitar(producto.id());
+            if (Boolean.TRUE.equals(producto.activo())) {
+                agregar(producto);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void remover(Long productoId) {
+        lock.writeLock().lock();
+        try {
+            if (!cargado) {
+                return;
+            }
+            quitar(productoId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void registrarVentas(Map<Long, Integer> cantidadesPorProducto) {
+        // Con el lock de lectura basta (popularidad es concurrente) y espera a una carga en curso.
+        // Antes de la carga no se acumula nada: la carga lee las ventas desde la BD
+        lock.readLock().lock();
+        try {
+            if (!cargado) {
+                return;
+            }
+            cantidadesPorProducto.forEach((productoId, cantidad) -> popularidad.merge(productoId, cantidad.longValue(), Long::sum));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public List<SugerenciaDTO> sugerir(String prefijo, int limite) {
+        String normalizado = normalizar(prefijo);
+        if (normalizado.isEmpty()) {
+            return List.of();
+        }
+        
+        lock.readLock().lock();
+        try {
+            Set<Long> candidatos = new HashSet<>();
+            int revisados = 0;
+            for (Set<Long> ids : terminos.subMap(normalizado, normalizado + Character.MAX_VALUE).values()) {
+                if (revisados++ >= MAX_TERMINOS_POR_PREFIJO) {
+                    break;
+                }
+                candidatos.addAll(ids);
+            }
+            
+            // Los puntajes se copian antes de ordenar: una venta concurrente cambiaría el orden
+            // de elementos que ya están dentro del heap y lo dejaría inconsistente
+            Map<Long, Long> puntajes = new HashMap<>(candidatos.size() * 2);
+            for (Long id : candidatos) {
+                puntajes.put(id, popularidad.getOrDefault(id, 0L));
+            }
+            
+            // Top-k con un heap de tamaño k: el peor de los elegidos queda en la cabeza
+            Comparator<Long> ranking = Comparator.<Long>comparingLong(puntajes::get)
+                    .thenComparing(Comparator.<Long>naturalOrder().reversed());
+            PriorityQueue<Long> mejores = new PriorityQueue<>(limite + 1, ranking);
+            for (Long id : candidatos) {
+                mejores.offer(id);
+                if (mejores.size() > limite) {
+                    mejores.poll();
+                }
+            }
+            
+            List<SugerenciaDTO> resultado = new ArrayList<>(mejores.size());
+            while (!mejores.isEmpty()) {
+                resultado.add(sugerencias.get(mejores.poll()));
+            }
+            Collections.reverse(resultado);
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private void agregar(ProductoResponseDTO producto) {
+        Set<String> propios = new HashSet<>();
+        String nombre = normalizar(producto.nombre());
+        int desde = 0;
+        while (!nombre.isEmpty()) {
+            propios.add(nombre.substring(desde));
+            int espacio = nombre.indexOf(' ', desde);
+            if (espacio < 0) {
+                break;
+            }
+            desde = espacio + 1;
+        }
+        propios.add(normalizar(producto.code()));
+        propios.add(normalizar(producto.marca()));
+        propios.remove("");
+        
+        for (String termino : propios) {
+            terminos.computeIfAbsent(termino, k -> new HashSet<>()).add(producto.id());
+        }
+        terminosPorProducto.put(producto.id(), propios);
+        sugerencias.put(producto.id(), new SugerenciaDTO(producto.id(), producto.code(), producto.nombre(), producto.marca()));
+    }
+    
+    private void quitar(Long productoId) {
+        sugerencias.remove(productoId);
+        Set<String> propios = terminosPorProducto.remove(productoId);
+        if (propios == null) {
+            return;
+        }
+        for (String termino : propios) {
+            Set<Long> ids = terminos.get(termino);
+            if (ids != null) {
+                ids.remove(productoId);
+                if (ids.isEmpty()) {
+                    terminos.remove(termino);
+                }
+            }
+        }
+    }
+    
+    private String normalizar(String texto) {
+        return ESPACIOS.matcher(NormalizadorTexto.normalizar(texto).trim()).replaceAll(" ");
+    }
+}
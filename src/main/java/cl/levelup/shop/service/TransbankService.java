@@ -1,6 +1,5 @@
 package cl.levelup.shop.service;
 
-import cl.levelup.shop.config.TransbankConfig;
 import cl.levelup.shop.dto.TransbankCommitResponseDTO;
 import cl.levelup.shop.dto.TransbankInitResponseDTO;
 import cl.levelup.shop.entity.Pedido;
@@ -8,144 +7,110 @@ import cl.levelup.shop.entity.enums.EstadoPedido;
 import cl.levelup.shop.exception.BadRequestException;
 import cl.levelup.shop.exception.ResourceNotFoundException;
 import cl.levelup.shop.repository.PedidoRepository;
-import cl.transbank.common.IntegrationType;
-import cl.transbank.webpay.webpayplus.WebpayPlus;
-import cl.transbank.webpay.webpayplus.responses.WebpayPlusTransactionCommitResponse;
-import cl.transbank.webpay.webpayplus.responses.WebpayPlusTransactionCreateResponse;
-import cl.transbank.webpay.webpayplus.responses.WebpayPlusTransactionStatusResponse;
-import cl.transbank.webpay.common.WebpayOptions;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class TransbankService {
     
     private final PedidoRepository pedidoRepository;
-    private final TransbankConfig transbankConfig;
+    private final PasarelaPago pasarelaPago;
+    private final TransactionTemplate transactionTemplate;
     
     @Value("${transbank.return-url}")
     private String returnUrl;
     
-    private WebpayPlus.Transaction getTransactionInstance() {
-        WebpayOptions options = new WebpayOptions(
-            transbankConfig.getCommerceCode(),
-            transbankConfig.getApiKey(),
-            IntegrationType.TEST
-        );
-        return new WebpayPlus.Transaction(options);
-    }
-    
-    @Transactional
+    // Sin @Transactional: la llamada HTTP a Transbank no debe retener una conexión del pool.
+    // Etapas: transacción corta para reservar el pedido, llamada remota, transacción corta para registrar
     public TransbankInitResponseDTO iniciarTransaccion(Long pedidoId, Long usuarioId) {
-        Pedido pedido = pedidoRepository.findById(pedidoId)
-            .orElseThrow(() -> new ResourceNotFoundException("Pedido no encontrado con ID: " + pedidoId));
+        String buyOrder = "ORDER-" + pedidoId + "-" + System.currentTimeMillis();
+        String sessionId = "SESSION-" + usuarioId + "-" + System.currentTimeMillis();
         
-        // Verificar que el pedido pertenece al usuario
-        if (!pedido.getUsuario().getId().equals(usuarioId)) {
-            throw new BadRequestException("El pedido no pertenece al usuario");
-        }
+        BigDecimal total = transactionTemplate.execute(status -> reservarPedido(pedidoId, usuarioId, buyOrder));
         
-        // Verificar que el pedido está en estado PENDIENTE
-        if (pedido.getEstado() != EstadoPedido.PENDIENTE) {
-            throw new BadRequestException("El pedido no está en estado PENDIENTE");
-        }
+        // Crear la transacción en Transbank
+        TransbankInitResponseDTO response = pasarelaPago.crear(buyOrder, sessionId, total.doubleValue(), returnUrl);
         
-        try {
-            WebpayPlus.Transaction transaction = getTransactionInstance();
-            
-            // Crear la transacción en Transbank
-            String buyOrder = "ORDER-" + pedidoId + "-" + System.currentTimeMillis();
-            String sessionId = "SESSION-" + usuarioId + "-" + System.currentTimeMillis();
-            double amount = pedido.getTotal().doubleValue();
-            
-            WebpayPlusTransactionCreateResponse response = transaction.create(
-                buyOrder,
-                sessionId,
-                amount,
-                returnUrl
-            );
-            
-            // Guardar el token en el pedido
-            pedido.setTransbankToken(response.getToken());
-            pedido.setTransbankBuyOrder(buyOrder);
-            pedidoRepository.save(pedido);
-            
-            return new TransbankInitResponseDTO(
-                response.getToken(),
-                response.getUrl()
-            );
-            
-        } catch (Exception e) {
-            throw new BadRequestException("Error al iniciar la transacción: " + e.getMessage());
+        // Guardar el token en el pedido
+        Integer actualizados = transactionTemplate.execute(status -> pedidoRepository.registrarToken(
+            pedidoId, buyOrder, response.token(), EstadoPedido.PENDIENTE));
+        if (actualizados == null || actualizados == 0) {
+            throw new BadRequestException("El pedido cambió mientras se iniciaba el pago, intenta nuevamente");
         }
+        
+        return response;
     }
     
-    @Transactional
     public TransbankCommitResponseDTO confirmarTransaccion(String token) {
-        try {
-            WebpayPlus.Transaction transaction = getTransactionInstance();
-            
-            // Confirmar la transacción con Transbank
-            WebpayPlusTransactionCommitResponse response = transaction.commit(token);
-            
-            // Buscar el pedido por el token
-            Pedido pedido = pedidoRepository.findAll().stream()
-                .filter(p -> token.equals(p.getTransbankToken()))
-                .findFirst()
-                .orElseThrow(() -> new ResourceNotFoundException("Pedido no encontrado para el token: " + token));
-            
-            // Verificar si la transacción fue aprobada
-            if ("AUTHORIZED".equals(response.getStatus())) {
-                pedido.setEstado(EstadoPedido.PAGADO);
-                pedido.setFechaPago(LocalDateTime.now());
-                pedido.setCodigoAutorizacion(response.getAuthorizationCode());
-                pedidoRepository.save(pedido);
+        if (!pedidoRepository.existsByTransbankToken(token)) {
+            throw new ResourceNotFoundException("Pedido no encontrado para el token: " + token);
+        }
+        
+        // Confirmar la transacción con Transbank
+        TransbankCommitResponseDTO response = pasarelaPago.confirmar(token);
+        
+        // Verificar si la transacción fue aprobada
+        if ("AUTHORIZED".equals(response.status())) {
+            Integer registrados = transactionTemplate.execute(status -> pedidoRepository.registrarPago(
+                token, EstadoPedido.PENDIENTE, EstadoPedido.PAGADO, LocalDateTime.now(), response.authorizationCode()));
+            if (registrados == null || registrados == 0) {
+                anularCargoSinPedido(token, response);
             }
-            
-            return new TransbankCommitResponseDTO(
-                response.getBuyOrder(),
-                response.getSessionId(),
-                response.getAmount(),
-                response.getStatus(),
-                response.getAuthorizationCode(),
-                response.getPaymentTypeCode(),
-                String.valueOf(response.getResponseCode()),
-                LocalDateTime.now(),
-                (int) response.getInstallmentsNumber(),
-                response.getCardDetail() != null ? response.getCardDetail().getCardNumber() : null
-            );
-            
-        } catch (Exception e) {
-            throw new BadRequestException("Error al confirmar la transacción: " + e.getMessage());
         }
+        
+        return response;
     }
     
-    @Transactional(readOnly = true)
     public TransbankCommitResponseDTO obtenerEstado(String token) {
+        return pasarelaPago.estado(token);
+    }
+    
+    // 0 filas: el pedido dejó de estar PENDIENTE mientras el usuario pagaba. Si ya figura PAGADO, la
+    // reconciliación registró este mismo cargo; si fue cancelado (y su stock devuelto), el cargo se reversa
+    private void anularCargoSinPedido(String token, TransbankCommitResponseDTO response) {
+        EstadoPedido estado = pedidoRepository.findEstadoByTransbankToken(token).orElse(null);
+        if (estado == EstadoPedido.PAGADO) {
+            return;
+        }
+        
         try {
-            WebpayPlus.Transaction transaction = getTransactionInstance();
-            WebpayPlusTransactionStatusResponse response = transaction.status(token);
-            
-            return new TransbankCommitResponseDTO(
-                response.getBuyOrder(),
-                response.getSessionId(),
-                response.getAmount(),
-                response.getStatus(),
-                response.getAuthorizationCode(),
-                response.getPaymentTypeCode(),
-                String.valueOf(response.getResponseCode()),
-                LocalDateTime.now(),
-                (int) response.getInstallmentsNumber(),
-                response.getCardDetail() != null ? response.getCardDetail().getCardNumber() : null
-            );
-            
-        } catch (Exception e) {
-            throw new BadRequestException("Error al obtener el estado de la transacción: " + e.getMessage());
+            String tipo = pasarelaPago.reembolsar(token, response.amount());
+            log.warn("Cargo autorizado para el pedido {} en estado {}: se anuló ({})", response.buyOrder(), estado, tipo);
+        } catch (RuntimeException e) {
+            // Queda en el log con lo necesario para reversarlo a mano desde el portal de Transbank
+            log.error("Cargo autorizado para el pedido {} en estado {} no se pudo anular, requiere reversa manual: " +
+                    "token={}, monto={}, autorizacion={}", response.buyOrder(), estado, token, response.amount(),
+                    response.authorizationCode(), e);
+            throw new BadRequestException("El pedido ya no está pendiente y el cargo no se pudo anular automáticamente; " +
+                    "será reversado por la tienda");
+        }
+        throw new BadRequestException("El pedido ya no está pendiente: el cargo fue anulado");
+    }
+    
+    private BigDecimal reservarPedido(Long pedidoId, Long usuarioId, String buyOrder) {
+        Pedido pedido = pedidoRepository.findByIdParaActualizar(pedidoId)
+            .orElseThrow(() -> new ResourceNotFoundException("Pedido no encontrado con ID: " + pedidoId));
+        
+        // Verificar que el pedido pertenece al usuario
+        if (!pedido.getUsuario().getId().equals(usuarioId)) {
+            throw new BadRequestException("El pedido no pertenece al usuario");
         }
+        
+        // Verificar que el pedido está en estado PENDIENTE
+        if (pedido.getEstado() != EstadoPedido.PENDIENTE) {
+            throw new BadRequestException("El pedido no está en estado PENDIENTE");
+        }
+        
+        pedido.setTransbankBuyOrder(buyOrder);
+        pedidoRepository.save(pedido);
+        return pedido.getTotal();
     }
 }
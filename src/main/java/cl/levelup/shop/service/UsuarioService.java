@@ -12,8 +12,8 @@ import cl.levelup.shop.exception.ResourceNotFoundException;
 import cl.levelup.shop.exception.UnauthorizedException;
 import cl.levelup.shop.repository.UsuarioRepository;
 import cl.levelup.shop.security.JwtUtil;
+import cl.levelup.shop.security.ProteccionLogin;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,7 +22,7 @@ import org.springframework.transaction.annotation.Transactional;
 public class UsuarioService {
     
     private final UsuarioRepository usuarioRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final ProteccionLogin proteccionLogin;
     private final JwtUtil jwtUtil;
     
     @Transactional
@@ -34,7 +34,7 @@ public class UsuarioService {
         // SEGURIDAD: Los usuarios públicos siempre se crean con rol USER
         Usuario usuario = Usuario.builder()
                 .email(request.email())
-                .password(passwordEncoder.encode(request.password()))
+                .password(proteccionLogin.codificar(request.password()))
                 .nombre(request.nombre())
                 .apellido(request.apellido())
                 .telefono(request.telefono())
@@ -49,8 +49,14 @@ public class UsuarioService {
         return new AuthResponseDTO(token, convertirAResponse(guardado));
     }
     
-    @Transactional(readOnly = true)
-    public AuthResponseDTO login(LoginRequestDTO request) {
+    // Sin transacción: no se retiene una conexión del pool mientras BCrypt espera en su cola
+    public AuthResponseDTO login(LoginRequestDTO request, String ip) {
+        return proteccionLogin.medir(() -> autenticar(request, ip));
+    }
+    
+    private AuthResponseDTO autenticar(LoginRequestDTO request, String ip) {
+        proteccionLogin.verificarLimites(ip, request.email());
+        
         Usuario usuario = usuarioRepository.findByEmail(request.email())
                 .orElseThrow(() -> new UnauthorizedException("Credenciales inválidas"));
         
@@ -58,10 +64,16 @@ public class UsuarioService {
             throw new UnauthorizedException("Usuario inactivo");
         }
         
-        if (!passwordEncoder.matches(request.password(), usuario.getPassword())) {
+        if (!proteccionLogin.verificarPassword(request.password(), usuario.getPassword())) {
             throw new UnauthorizedException("Credenciales inválidas");
         }
         
+        // Si subió el costo configurado, se aprovecha la contraseña en claro para rehashear
+        if (proteccionLogin.requiereRehash(usuario.getPassword())) {
+            String nuevoHash = proteccionLogin.codificar(request.password());
+            usuarioRepository.actualizarPassword(usuario.getId(), usuario.getPassword(), nuevoHash);
+        }
+        
         String token = jwtUtil.generateToken(usuario.getEmail(), usuario.getId(), usuario.getRol().name());
         
         return new AuthResponseDTO(token, convertirAResponse(usuario));
@@ -0,0 +1,11 @@
+package cl.levelup.shop.service;
+
+public record VersionCatalogo(
+        String etag
+) {
+    
+    // Cada codificación es una representación distinta y necesita su propio ETag fuerte
+    public String etag(String codificacion) {
+        return etag.substring(0, etag.length() - 1) + "-" + codificacion + "\"";
+    }
+}
@@ -0,0 +1,153 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.config.TransbankConfig;
+import cl.levelup.shop.dto.TransbankCommitResponseDTO;
+import cl.levelup.shop.dto.TransbankInitResponseDTO;
+import cl.levelup.shop.exception.BadRequestException;
+import cl.levelup.shop.exception.SolicitudPagoInvalidaException;
+import cl.transbank.common.IntegrationType;
+import cl.transbank.exception.TransbankException;
+import cl.transbank.webpay.common.WebpayOptions;
+import cl.transbank.webpay.webpayplus.WebpayPlus;
+import cl.transbank.webpay.webpayplus.responses.WebpayPlusTransactionCommitResponse;
+import cl.transbank.webpay.webpayplus.responses.WebpayPlusTransactionCreateResponse;
+import cl.transbank.webpay.webpayplus.responses.WebpayPlusTransactionRefundResponse;
+import cl.transbank.webpay.webpayplus.responses.WebpayPlusTransactionStatusResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+// Cliente único de Webpay Plus: las opciones y la transacción del SDK no guardan estado
+// por llamada, así que se construyen una vez y se comparten entre hilos
+public class WebpayCliente implements PasarelaPago {
+    
+    private static final Set<String> AMBIENTES_PRODUCCION = Set.of("PRODUCCION", "LIVE");
+    private static final List<String> OPERACIONES = List.of("create", "commit", "status", "refund");
+    private static final List<String> RESULTADOS = List.of("ok", "invalida", "error");
+    
+    private final WebpayPlus.Transaction transaction;
+    private final MeterRegistry meterRegistry;
+    // operación:resultado -> timer, registrados una vez en vez de buscarlos en el registry en cada llamada
+    private final Map<String, Timer> timers = new HashMap<>();
+    
+    public WebpayCliente(TransbankConfig transbankConfig, MeterRegistry meterRegistry) {
+        // El timeout va en las opciones del SDK, que lo aplica a la conexión y a la lectura de cada
+        // request a Webpay, sin tocar los valores por defecto de HttpURLConnection del resto de la JVM
+        WebpayOptions options = new WebpayOptions(
+            transbankConfig.getCommerceCode(),
+            transbankConfig.getApiKey(),
+            integrationType(transbankConfig.getEnvironment()),
+            transbankConfig.getTimeoutMs()
+        );
+        this.transaction = new WebpayPlus.Transaction(options);
+        this.meterRegistry = meterRegistry;
+        for (String operacion : OPERACIONES) {
+            for (String resultado : RESULTADOS) {
+                timers.put(operacion + ":" + resultado, Timer.builder("transbank.llamadas")
+                    .description("Latencia de las llamadas a Webpay Plus")
+                    .tag("operacion", operacion)
+                    .tag("resultado", resultado)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            }
+        }
+    }
+    
+    @Override
+    public TransbankInitResponseDTO crear(String buyOrder, String sessionId, double amount, String returnUrl) {
+        WebpayPlusTransactionCreateResponse response = medir("create", "Error al iniciar la transacción: ",
+            () -> transaction.create(buyOrder, sessionId, amount, returnUrl));
+        return new TransbankInitResponseDTO(
+            response.getToken(),
+            response.getUrl()
+        );
+    }
+    
+    @Override
+    public TransbankCommitResponseDTO confirmar(String token) {
+        WebpayPlusTransactionCommitResponse response = medir("commit", "Error al confirmar la transacción: ",
+            () -> transaction.commit(token));
+        return new TransbankCommitResponseDTO(
+            response.getBuyOrder(),
+            response.getSessionId(),
+            response.getAmount(),
+            response.getStatus(),
+            response.getAuthorizationCode(),
+            response.getPaymentTypeCode(),
+            String.valueOf(response.getResponseCode()),
+            LocalDateTime.now(),
+            (int) response.getInstallmentsNumber(),
+            response.getCardDetail() != null ? response.getCardDetail().getCardNumber() : null
+        );
+    }
+    
+    @Override
+    public TransbankCommitResponseDTO estado(String token) {
+        WebpayPlusTransactionStatusResponse response = medir("status", "Error al obtener el estado de la transacción: ",
+            () -> transaction.status(token));
+        return new TransbankCommitResponseDTO(
+            response.getBuyOrder(),
+            response.getSessionId(),
+            response.getAmount(),
+            response.getStatus(),
+            response.getAuthorizationCode(),
+            response.getPaymentTypeCode(),
+            String.valueOf(response.getResponseCode()),
+            LocalDateTime.now(),
+            (int) response.getInstallmentsNumber(),
+            response.getCardDetail() != null ? response.getCardDetail().getCardNumber() : null
+        );
+    }
+    
+    @Override
+    public String reembolsar(String token, double amount) {
+        WebpayPlusTransactionRefundResponse response = medir("refund", "Error al reembolsar la transacción: ",
+            () -> transaction.refund(token, amount));
+        return response.getType();
+    }
+    
+    private <T> T medir(String operacion, String mensajeError, Callable<T> llamada) {
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        String resultado = "error";
+        try {
+            T response = llamada.call();
+            resultado = "ok";
+            return response;
+        } catch (Exception e) {
+            if (esErrorDeSolicitud(e)) {
+                resultado = "invalida";
+                throw new SolicitudPagoInvalidaException(mensajeError + e.getMessage());
+            }
+            throw new BadRequestException(mensajeError + e.getMessage());
+        } finally {
+            muestra.stop(timers.get(operacion + ":" + resultado));
+        }
+    }
+    
+    // El SDK envuelve la respuesta HTTP de Webpay; el código queda en alguna TransbankException de la cadena.
+    // 4xx es un rechazo de la solicitud, salvo 401/403: credenciales mal configuradas fallan en todas las llamadas
+    private static boolean esErrorDeSolicitud(Throwable error) {
+        for (Throwable actual = error; actual != null; actual = actual.getCause()) {
+            if (actual instanceof TransbankException transbank) {
+                int codigo = transbank.getCode();
+                if (codigo >= 400 && codigo < 500 && codigo != 401 && codigo != 403) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private static IntegrationType integrationType(String environment) {
+        // Cualquier otro valor (INTEGRACION por defecto) usa el ambiente de pruebas de Transbank
+        return environment != null && AMBIENTES_PRODUCCION.contains(environment.trim().toUpperCase())
+            ? IntegrationType.LIVE
+            : IntegrationType.TEST;
+    }
+}
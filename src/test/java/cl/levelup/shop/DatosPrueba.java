@@ -0,0 +1,72 @@
+package cl.levelup.shop;
+
+import cl.levelup.shop.entity.Categoria;
+import cl.levelup.shop.entity.Producto;
+import cl.levelup.shop.entity.Usuario;
+import cl.levelup.shop.repository.CategoriaRepository;
+import cl.levelup.shop.repository.ProductoRepository;
+import cl.levelup.shop.repository.UsuarioRepository;
+import cl.levelup.shop.service.CatalogoCache;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Datos mínimos para las pruebas de PruebaBaseDatos. Emails y códigos no se repiten porque
+// las pruebas que confirman sus transacciones dejan filas en la base compartida
+public class DatosPrueba {
+    
+    public static final BigDecimal PRECIO = new BigDecimal("1000.00");
+    public static final String DIRECCION = "Av. Libertador Bernardo O'Higgins 1234, Santiago";
+    
+    private static final AtomicInteger SECUENCIA = new AtomicInteger();
+    
+    private final UsuarioRepository usuarioRepository;
+    private final CategoriaRepository categoriaRepository;
+    private final ProductoRepository productoRepository;
+    private final CatalogoCache catalogoCache;
+    
+    public DatosPrueba(UsuarioRepository usuarioRepository, CategoriaRepository categoriaRepository,
+                       ProductoRepository productoRepository, CatalogoCache catalogoCache) {
+        this.usuarioRepository = usuarioRepository;
+        this.categoriaRepository = categoriaRepository;
+        this.productoRepository = productoRepository;
+        this.catalogoCache = catalogoCache;
+    }
+    
+    // Para códigos y nombres de filas que las pruebas crean por su cuenta
+    public static String unico(String prefijo) {
+        return prefijo + SECUENCIA.incrementAndGet();
+    }
+    
+    public Usuario usuario() {
+        int n = SECUENCIA.incrementAndGet();
+        return usuarioRepository.save(Usuario.builder()
+                .email("usuario" + n + "@prueba.cl")
+                .password("sin-uso")
+                .nombre("Usuario")
+                .apellido("Prueba " + n)
+                .build());
+    }
+    
+    public Categoria categoria() {
+        int n = SECUENCIA.incrementAndGet();
+        return categoriaRepository.save(Categoria.builder()
+                .id("C" + n)
+                .nombre("Categoría " + n)
+                .build());
+    }
+    
+    public Producto producto(Categoria categoria, int stock) {
+        int n = SECUENCIA.incrementAndGet();
+        Producto producto = productoRepository.save(Producto.builder()
+                .code("P" + n)
+                .nombre("Producto " + n)
+                .categoria(categoria)
+                .precio(PRECIO)
+                .stock(stock)
+                .build());
+        // El catálogo en memoria no ve filas insertadas sin pasar por ProductoService
+        catalogoCache.invalidar();
+        return producto;
+    }
+}
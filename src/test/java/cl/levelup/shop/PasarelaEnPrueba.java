@@ -0,0 +1,64 @@
+package cl.levelup.shop;
+
+import cl.levelup.shop.dto.TransbankCommitResponseDTO;
+import cl.levelup.shop.dto.TransbankInitResponseDTO;
+import cl.levelup.shop.service.PasarelaPago;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Transbank local para las pruebas de PruebaBaseDatos: crear() tarda la latencia configurada o
+// queda retenido hasta liberar(), y se puede ver cuántas llamadas remotas están en curso
+public class PasarelaEnPrueba implements PasarelaPago {
+    
+    private final AtomicInteger enCurso = new AtomicInteger();
+    private final AtomicInteger tokens = new AtomicInteger();
+    private volatile long latenciaMs;
+    private volatile CountDownLatch retencion = new CountDownLatch(0);
+    
+    public void setLatenciaMs(long latenciaMs) {
+        this.latenciaMs = latenciaMs;
+    }
+    
+    public void retener() {
+        retencion = new CountDownLatch(1);
+    }
+    
+    public void liberar() {
+        retencion.countDown();
+    }
+    
+    public int getEnCurso() {
+        return enCurso.get();
+    }
+    
+    @Override
+    public TransbankInitResponseDTO crear(String buyOrder, String sessionId, double amount, String returnUrl) {
+        enCurso.incrementAndGet();
+        try {
+            Thread.sleep(latenciaMs);
+            retencion.await();
+            return new TransbankInitResponseDTO("token-prueba-" + tokens.incrementAndGet(), "http://localhost/webpay");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido esperando a la pasarela de prueba", e);
+        } finally {
+            enCurso.decrementAndGet();
+        }
+    }
+    
+    @Override
+    public TransbankCommitResponseDTO confirmar(String token) {
+        throw new UnsupportedOperationException("La pasarela de prueba solo crea transacciones");
+    }
+    
+    @Override
+    public TransbankCommitResponseDTO estado(String token) {
+        throw new UnsupportedOperationException("La pasarela de prueba solo crea transacciones");
+    }
+    
+    @Override
+    public String reembolsar(String token, double amount) {
+        throw new UnsupportedOperationException("La pasarela de prueba solo crea transacciones");
+    }
+}
@@ -0,0 +1,47 @@
+package cl.levelup.shop;
+
+import cl.levelup.shop.service.BusquedaIndex;
+import cl.levelup.shop.service.CarritoService;
+import cl.levelup.shop.service.CarritoStore;
+import cl.levelup.shop.service.CatalogoCache;
+import cl.levelup.shop.service.CatalogoSerializado;
+import cl.levelup.shop.service.PedidoService;
+import cl.levelup.shop.service.ProductoService;
+import cl.levelup.shop.service.SugerenciasIndex;
+import cl.levelup.shop.service.TransbankService;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.testcontainers.containers.MariaDBContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+// Base de las pruebas contra una MariaDB real: bloqueos de fila, UPDATE condicionales y commits
+// concurrentes no se reproducen con mocks. Las subclases comparten contenedor y contexto; sin Docker se omiten.
+// Las estadísticas de Hibernate permiten contar sentencias; el flush periódico de carritos
+// queda fuera del alcance de la prueba para que no corra entre medio
+@DataJpaTest(showSql = false, properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=cl.levelup.shop.SecuenciasSql",
+        "carrito.flush-intervalo-ms=3600000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({DatosPrueba.class, PasarelaEnPrueba.class, CatalogoCache.class, BusquedaIndex.class,
+        SugerenciasIndex.class, CatalogoSerializado.class, ProductoService.class, CarritoStore.class,
+        CarritoService.class, PedidoService.class, TransbankService.class})
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class PruebaBaseDatos {
+    
+    @ServiceConnection
+    static final MariaDBContainer<?> MARIADB = new MariaDBContainer<>(DockerImageName.parse("mariadb:11.2"));
+    
+    static {
+        // Una vez por JVM y no por clase: el contexto cacheado entre clases sigue apuntando a este contenedor
+        MARIADB.start();
+    }
+}
@@ -0,0 +1,31 @@
+package cl.levelup.shop;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Cuenta las lecturas de secuencias que Hibernate prepara al asignar ids. Dependen de cuántos ids
+// quedan en el bloque reservado (allocationSize 50) y no del código probado: las pruebas que cuentan
+// sentencias con las estadísticas de Hibernate las descuentan
+public class SecuenciasSql implements StatementInspector {
+    
+    private static final AtomicInteger lecturas = new AtomicInteger();
+    
+    @Override
+    public String inspect(String sql) {
+        String minusculas = sql.toLowerCase(Locale.ROOT);
+        if (minusculas.contains("next value for") || minusculas.contains("nextval(")) {
+            lecturas.incrementAndGet();
+        }
+        return sql;
+    }
+    
+    public static void reiniciar() {
+        lecturas.set(0);
+    }
+    
+    public static int lecturas() {
+        return lecturas.get();
+    }
+}
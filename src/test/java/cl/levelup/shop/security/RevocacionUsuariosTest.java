@@ -0,0 +1,75 @@
+package cl.levelup.shop.security;
+
+import cl.levelup.shop.repository.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RevocacionUsuariosTest {
+    
+    private final UsuarioRepository usuarioRepository = mock(UsuarioRepository.class);
+    private RevocacionUsuarios revocacion;
+    
+    @BeforeEach
+    void setUp() {
+        revocacion = new RevocacionUsuarios(usuarioRepository);
+        ReflectionTestUtils.setField(revocacion, "principalSinBd", true);
+    }
+    
+    @Test
+    void sinRevocacionLosTokensSonValidos() {
+        assertFalse(revocacion.estaRevocado(1L, new Date()));
+    }
+    
+    @Test
+    void revocaLosTokensEmitidosAntes() {
+        revocacion.revocar(1L);
+        
+        assertTrue(revocacion.estaRevocado(1L, new Date(System.currentTimeMillis() - 60_000)));
+        assertTrue(revocacion.estaRevocado(1L, null));
+        assertFalse(revocacion.estaRevocado(1L, new Date(System.currentTimeMillis() + 60_000)));
+        assertFalse(revocacion.estaRevocado(2L, new Date(System.currentTimeMillis() - 60_000)));
+    }
+    
+    @Test
+    void dentroDeUnaTransaccionRevocaRecienAlConfirmar() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            revocacion.revocar(1L);
+            assertFalse(revocacion.estaRevocado(1L, new Date(System.currentTimeMillis() - 60_000)));
+            
+            TransactionSynchronizationUtils.triggerAfterCommit();
+            assertTrue(revocacion.estaRevocado(1L, new Date(System.currentTimeMillis() - 60_000)));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+    
+    @Test
+    void alArrancarRevocaLosUsuariosInactivos() {
+        when(usuarioRepository.findIdsInactivos()).thenReturn(List.of(5L));
+        
+        revocacion.cargarInactivos();
+        assertTrue(revocacion.estaRevocado(5L, new Date(System.currentTimeMillis() - 60_000)));
+    }
+    
+    @Test
+    void conPrincipalDesdeLaBdNoConsultaInactivos() {
+        ReflectionTestUtils.setField(revocacion, "principalSinBd", false);
+        
+        revocacion.cargarInactivos();
+        verify(usuarioRepository, never()).findIdsInactivos();
+    }
+}
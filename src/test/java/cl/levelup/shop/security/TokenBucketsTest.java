@@ -0,0 +1,107 @@
+package cl.levelup.shop.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketsTest {
+    
+    @Test
+    void permiteLaRafagaYLuegoIndicaCuantoEsperar() {
+        TokenBuckets buckets = new TokenBuckets(3, 60, 100);
+        
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, buckets.consumir("ip:1"));
+        }
+        // 60 por minuto: un token cada segundo
+        long esperaMs = buckets.consumir("ip:1");
+        assertTrue(esperaMs > 0 && esperaMs <= 1_000);
+    }
+    
+    @Test
+    void cadaClaveTieneSuPropioBucket() {
+        TokenBuckets buckets = new TokenBuckets(1, 1, 100);
+        
+        assertEquals(0, buckets.consumir("ip:1"));
+        assertTrue(buckets.consumir("ip:1") > 0);
+        assertEquals(0, buckets.consumir("ip:2"));
+    }
+    
+    @Test
+    void seRecargaConElTiempo() throws InterruptedException {
+        TokenBuckets buckets = new TokenBuckets(1, 6_000, 100);
+        
+        assertEquals(0, buckets.consumir("ip:1"));
+        assertTrue(buckets.consumir("ip:1") > 0);
+        Thread.sleep(50);
+        assertEquals(0, buckets.consumir("ip:1"));
+    }
+    
+    @Test
+    void devolverRestituyeUnTokenSinSuperarLaCapacidad() {
+        TokenBuckets buckets = new TokenBuckets(2, 1, 100);
+        
+        assertEquals(0, buckets.consumir("u:1"));
+        assertEquals(0, buckets.consumir("u:1"));
+        buckets.devolver("u:1");
+        assertEquals(0, buckets.consumir("u:1"));
+        assertTrue(buckets.consumir("u:1") > 0);
+        
+        // Devolver a un bucket lleno o inexistente no agrega cupo
+        buckets.devolver("u:2");
+        buckets.devolver("u:2");
+        assertEquals(0, buckets.consumir("u:2"));
+        assertEquals(0, buckets.consumir("u:2"));
+        assertTrue(buckets.consumir("u:2") > 0);
+    }
+    
+    @Test
+    void bajoConcurrenciaNoEntregaMasTokensQueLaCapacidad() throws InterruptedException {
+        TokenBuckets buckets = new TokenBuckets(100, 1, 100);
+        AtomicInteger concedidos = new AtomicInteger();
+        ExecutorService hilos = Executors.newFixedThreadPool(8);
+        CountDownLatch inicio = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 1_000; i++) {
+                hilos.submit(() -> {
+                    inicio.await();
+                    if (buckets.consumir("ip:1") == 0) {
+                        concedidos.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            inicio.countDown();
+            hilos.shutdown();
+            assertTrue(hilos.awaitTermination(10, TimeUnit.SECONDS));
+        } finally {
+            hilos.shutdownNow();
+        }
+        // La recarga de 1 por minuto no alcanza a sumar otro token durante la prueba
+        assertEquals(100, concedidos.get());
+    }
+    
+    @Test
+    void elNumeroDeClavesQuedaAcotado() {
+        TokenBuckets buckets = new TokenBuckets(1, 1, 10);
+        for (int i = 0; i < 100; i++) {
+            buckets.consumir("ip:" + i);
+        }
+        
+        // Las claves olvidadas vuelven con el bucket lleno: como mucho 10 siguen agotadas
+        int agotadas = 0;
+        for (int i = 0; i < 100; i++) {
+            if (buckets.consumir("ip:" + i) > 0) {
+                agotadas++;
+            }
+        }
+        assertTrue(agotadas <= 10);
+    }
+}
@@ -0,0 +1,84 @@
+package cl.levelup.shop.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenVerificadoCacheTest {
+    
+    private final AtomicInteger verificaciones = new AtomicInteger();
+    private TokenVerificadoCache cache;
+    
+    @BeforeEach
+    void setUp() {
+        cache = new TokenVerificadoCache();
+        ReflectionTestUtils.setField(cache, "maxEntradas", 10);
+    }
+    
+    @Test
+    void verificaUnaSolaVezMientrasElTokenNoExpira() {
+        Claims claims = claims(60_000);
+        
+        assertSame(claims, cache.obtener("token", verificador(claims)));
+        assertSame(claims, cache.obtener("token", verificador(claims)));
+        assertEquals(1, verificaciones.get());
+    }
+    
+    @Test
+    void vuelveAVerificarCuandoElTokenCacheadoExpiro() {
+        Claims expirados = claims(-1_000);
+        
+        cache.obtener("token", verificador(expirados));
+        cache.obtener("token", verificador(expirados));
+        assertEquals(2, verificaciones.get());
+    }
+    
+    @Test
+    void noCacheaTokensRechazadosNiSinExpiracion() {
+        Function<String, Claims> rechaza = token -> {
+            verificaciones.incrementAndGet();
+            throw new JwtException("firma inválida");
+        };
+        assertThrows(JwtException.class, () -> cache.obtener("token", rechaza));
+        assertThrows(JwtException.class, () -> cache.obtener("token", rechaza));
+        
+        Claims sinExpiracion = Jwts.claims().subject("1").build();
+        cache.obtener("otro", verificador(sinExpiracion));
+        cache.obtener("otro", verificador(sinExpiracion));
+        assertEquals(4, verificaciones.get());
+    }
+    
+    @Test
+    void elTamanoQuedaAcotado() {
+        for (int i = 0; i < 100; i++) {
+            cache.obtener("token-" + i, verificador(claims(60_000)));
+        }
+        
+        Map<?, ?> verificados = (Map<?, ?>) ReflectionTestUtils.getField(cache, "verificados");
+        assertTrue(verificados.size() <= 10);
+    }
+    
+    private Function<String, Claims> verificador(Claims claims) {
+        return token -> {
+            verificaciones.incrementAndGet();
+            return claims;
+        };
+    }
+    
+    private static Claims claims(long vigenciaMs) {
+        return Jwts.claims().subject("1").expiration(new Date(System.currentTimeMillis() + vigenciaMs)).build();
+    }
+}
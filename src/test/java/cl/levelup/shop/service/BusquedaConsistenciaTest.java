@@ -0,0 +1,128 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.DatosPrueba;
+import cl.levelup.shop.PruebaBaseDatos;
+import cl.levelup.shop.dto.request.ProductoRequestDTO;
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import cl.levelup.shop.entity.Producto;
+import cl.levelup.shop.repository.ProductoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// El índice invertido contra la consulta LIKE que reemplazó, sobre las mismas filas en MariaDB.
+// Para una palabra completa ambos deben devolver los mismos productos; los productos se crean
+// con ProductoService para que el índice se actualice al confirmar, como en producción
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BusquedaConsistenciaTest extends PruebaBaseDatos {
+    
+    @Autowired
+    private ProductoService productoService;
+    
+    @Autowired
+    private ProductoRepository productoRepository;
+    
+    @Autowired
+    private DatosPrueba datos;
+    
+    private final Set<Long> creados = new HashSet<>();
+    private String categoriaId;
+    private Long teclado;
+    private Long mouse;
+    private Long audifonos;
+    private Long membrana;
+    private Long auriculares;
+    private Long auricular;
+    
+    @BeforeEach
+    void setUp() {
+        categoriaId = datos.categoria().getId();
+        teclado = crear("Teclado mecánico Kraken", "Razer", "Switches lineales y retroiluminación RGB", true);
+        mouse = crear("Mouse inalámbrico Viper", "Razer", "Sensor óptico de 20000 DPI", true);
+        audifonos = crear("Audífonos Kraken X", "HyperX", "Sonido envolvente 7.1", true);
+        membrana = crear("Teclado de membrana", "Logitech", "Silencioso, ideal para oficina", true);
+        crear("Teclado retro", "Razer", "Edición descontinuada", false);
+        auriculares = crear("Auriculares inalámbricos Cloud", "Corsair", "Bluetooth con estuche de carga", true);
+        auricular = crear("Auricular con micrófono", "Corsair", "Cancelación de ruido", true);
+    }
+    
+    @Test
+    void palabrasCompletasDevuelvenLoMismoQueLaConsultaLike() {
+        assertMismosResultados("teclado", teclado, membrana);
+        assertMismosResultados("razer", teclado, mouse);
+        assertMismosResultados("kraken", teclado, audifonos);
+        assertMismosResultados("rgb", teclado);
+        assertMismosResultados("logitech", membrana);
+        assertMismosResultados("mecánico", teclado);
+        assertMismosResultados("TECLADO", teclado, membrana);
+        assertMismosResultados("auricular", auriculares, auricular);
+    }
+    
+    @Test
+    void prefijosCortosDevuelvenLoMismoQueLaConsultaLike() {
+        // Prefijos que en estos datos solo aparecen al inicio de una palabra, donde LIKE e índice coinciden
+        assertMismosResultados("kr", teclado, audifonos);
+        assertMismosResultados("hy", audifonos);
+        assertMismosResultados("tec", teclado, membrana);
+        assertMismosResultados("cors", auriculares, auricular);
+    }
+    
+    @Test
+    void elIndiceSigueALaBaseDespuesDeActualizarYDesactivar() {
+        productoService.actualizar(membrana, new ProductoRequestDTO(codigoDe(membrana), "Teclado de membrana",
+                categoriaId, DatosPrueba.PRECIO, 10, "Genius", null, "Silencioso, ideal para oficina",
+                null, null, null, true));
+        productoService.eliminar(teclado);
+        
+        assertMismosResultados("logitech");
+        assertMismosResultados("genius", membrana);
+        assertMismosResultados("teclado", membrana);
+        assertMismosResultados("kraken", audifonos);
+    }
+    
+    @Test
+    void elIndiceCubreLoQueLikeNoEncuentra() {
+        // Sin tilde o con varios términos: LIKE depende de la collation y busca la frase literal, el índice no
+        assertTrue(porIndice("mecanico").contains(teclado));
+        assertTrue(porIndice("tecl").containsAll(Set.of(teclado, membrana)));
+        assertEquals(Set.of(teclado), porIndice("kraken teclado"));
+        // El plural se indexa como el singular: LIKE con "auriculares" no encuentra "Auricular con micrófono"
+        assertEquals(Set.of(auriculares, auricular), porIndice("auriculares"));
+    }
+    
+    private void assertMismosResultados(String keyword, Long... esperados) {
+        Set<Long> like = productoRepository.buscarProductos(keyword).stream()
+                .map(Producto::getId)
+                .filter(creados::contains)
+                .collect(Collectors.toSet());
+        assertEquals(Set.of(esperados), like, "LIKE para '" + keyword + "'");
+        assertEquals(like, porIndice(keyword), "índice para '" + keyword + "'");
+    }
+    
+    private Set<Long> porIndice(String keyword) {
+        return productoService.buscar(keyword).stream()
+                .map(ProductoResponseDTO::id)
+                .filter(creados::contains)
+                .collect(Collectors.toSet());
+    }
+    
+    private String codigoDe(Long id) {
+        return productoService.obtenerPorId(id).code();
+    }
+    
+    private Long crear(String nombre, String marca, String descripcion, boolean activo) {
+        Long id = productoService.crear(new ProductoRequestDTO(DatosPrueba.unico("B"), nombre, categoriaId,
+                DatosPrueba.PRECIO, 10, marca, null, descripcion, null, null, null, activo)).id();
+        creados.add(id);
+        return id;
+    }
+}
@@ -0,0 +1,101 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BusquedaIndexTest {
+    
+    private BusquedaIndex index;
+    
+    @BeforeEach
+    void setUp() {
+        index = new BusquedaIndex();
+        index.cargarSiEsNecesario(() -> List.of(
+                producto(1L, "Mouse Logitech G502", "Logitech", "Mouse gamer con sensor Hero", true),
+                producto(2L, "Teclado mecánico", "Logitech", "Switches táctiles para juegos", true),
+                producto(3L, "Audífonos HyperX Cloud", "HyperX", "Sonido envolvente para consolas", true)
+        ));
+    }
+    
+    @Test
+    void buscaSinTildesYPorPrefijo() {
+        assertEquals(List.of(2L), index.buscar("mecanico"));
+        assertEquals(List.of(3L), index.buscar("AUDIF"));
+    }
+    
+    @Test
+    void todosLosTerminosDebenCoincidir() {
+        assertEquals(List.of(1L), index.buscar("logitech mouse"));
+        assertEquals(List.of(), index.buscar("logitech cloud"));
+        assertEquals(List.of(), index.buscar("de la"));
+    }
+    
+    @Test
+    void ordenaPorPesoDelCampo() {
+        // "logitech" está en el nombre y la marca del 1, solo en la marca del 2
+        assertEquals(List.of(1L, 2L), index.buscar("logitech"));
+    }
+    
+    @Test
+    void unPrefijoCortoTraeTodosLosTerminosQueEmpiezanConEl() {
+        List<ProductoResponseDTO> productos = new ArrayList<>();
+        productos.add(producto(1L, "zz", null, null, true));
+        for (long id = 2; id < 200; id++) {
+            productos.add(producto(id, "zz" + id, null, null, true));
+        }
+        BusquedaIndex grande = new BusquedaIndex();
+        grande.cargarSiEsNecesario(() -> productos);
+        
+        // El término exacto va primero por su bono; el resto de los 198 términos también se cuenta
+        assertEquals(1L, grande.buscar("zz").get(0));
+        assertEquals(199, grande.buscar("zz").size());
+        assertEquals(199, grande.buscar("z").size());
+        assertEquals(List.of(150L), grande.buscar("zz150"));
+    }
+    
+    @Test
+    void singularYPluralCoinciden() {
+        index.indexar(producto(4L, "Auriculares inalámbricos", "Corsair", null, true));
+        index.indexar(producto(5L, "Parlante portátil", "JBL", null, true));
+        
+        assertEquals(List.of(4L), index.buscar("auricular"));
+        assertEquals(List.of(4L), index.buscar("auriculares"));
+        assertEquals(List.of(5L), index.buscar("parlantes"));
+        assertEquals(List.of(3L), index.buscar("consola"));
+    }
+    
+    @Test
+    void indexarYRemoverMantienenElIndice() {
+        index.indexar(producto(2L, "Teclado inalámbrico", "Redragon", null, true));
+        assertEquals(List.of(), index.buscar("mecanico"));
+        assertEquals(List.of(2L), index.buscar("redragon"));
+        
+        index.indexar(producto(4L, "Mousepad XL", "Razer", null, false));
+        assertEquals(List.of(), index.buscar("mousepad"));
+        
+        index.remover(1L);
+        assertEquals(List.of(), index.buscar("g502"));
+    }
+    
+    @Test
+    void antesDeLaCargaNoSeIndexaNada() {
+        BusquedaIndex vacio = new BusquedaIndex();
+        vacio.indexar(producto(9L, "Webcam", null, null, true));
+        vacio.cargarSiEsNecesario(List::of);
+        
+        // La carga parte del catálogo vigente; lo indexado antes se descarta
+        assertEquals(List.of(), vacio.buscar("webcam"));
+    }
+    
+    private static ProductoResponseDTO producto(Long id, String nombre, String marca, String descripcion, boolean activo) {
+        return new ProductoResponseDTO(id, "P" + id, nombre, "AC", "Accesorios", BigDecimal.TEN, 1, marca,
+                BigDecimal.ONE, descripcion, null, null, null, activo);
+    }
+}
@@ -0,0 +1,144 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.DatosPrueba;
+import cl.levelup.shop.PruebaBaseDatos;
+import cl.levelup.shop.dto.request.CarritoItemRequestDTO;
+import cl.levelup.shop.dto.response.CarritoItemResponseDTO;
+import cl.levelup.shop.dto.response.CarritoResponseDTO;
+import cl.levelup.shop.dto.response.PedidoResponseDTO;
+import cl.levelup.shop.exception.InsufficientStockException;
+import cl.levelup.shop.repository.CarritoItemRepository;
+import cl.levelup.shop.repository.CarritoRepository;
+import cl.levelup.shop.repository.ProductoRepository;
+import cl.levelup.shop.repository.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Una caída se simula con un CarritoStore nuevo sobre la misma BD: lo que solo estaba en memoria se pierde
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CarritoRecuperacionTest extends PruebaBaseDatos {
+    
+    @Autowired
+    private CarritoService carritoService;
+    
+    @Autowired
+    private CarritoStore carritoStore;
+    
+    @Autowired
+    private PedidoService pedidoService;
+    
+    @Autowired
+    private ProductoService productoService;
+    
+    @Autowired
+    private CarritoRepository carritoRepository;
+    
+    @Autowired
+    private CarritoItemRepository carritoItemRepository;
+    
+    @Autowired
+    private ProductoRepository productoRepository;
+    
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private DatosPrueba datos;
+    
+    private Long usuarioId;
+    private Long productoId;
+    
+    @BeforeEach
+    void setUp() {
+        usuarioId = datos.usuario().getId();
+        productoId = datos.producto(datos.categoria(), 5).getId();
+    }
+    
+    @Test
+    void itemNuevoSobreviveSinFlush() {
+        carritoService.agregarProducto(usuarioId, new CarritoItemRequestDTO(productoId, 2));
+        
+        CarritoResponseDTO recuperado = despuesDeUnaCaida().obtenerCarritoActivo(usuarioId);
+        assertEquals(1, recuperado.items().size());
+        assertEquals(2, recuperado.items().get(0).cantidad());
+    }
+    
+    @Test
+    void cambioPendienteSePierdeSoloHastaElFlush() {
+        Long itemId = agregar(2).id();
+        carritoService.actualizarCantidad(usuarioId, itemId, 4);
+        
+        // La ventana aceptada: una caída antes del flush pierde el último cambio de cantidad
+        assertEquals(2, cantidadRecuperada());
+        
+        carritoStore.flushPeriodico();
+        assertEquals(4, cantidadRecuperada());
+        
+        carritoService.eliminarItem(usuarioId, itemId);
+        carritoStore.flushPeriodico();
+        assertTrue(despuesDeUnaCaida().obtenerCarritoActivo(usuarioId).items().isEmpty());
+    }
+    
+    @Test
+    void checkoutEscribeLoPendienteAntesDeConfirmar() {
+        Long carritoId = carritoService.obtenerCarritoActivo(usuarioId).id();
+        carritoService.actualizarCantidad(usuarioId, agregar(2).id(), 4);
+        
+        PedidoResponseDTO pedido = pedidoService.crearDesdeCarrito(usuarioId, DatosPrueba.DIRECCION);
+        
+        assertEquals(4, pedido.totalItems());
+        assertEquals(1, productoRepository.findStockById(productoId));
+        // El carrito comprado no vuelve después de una caída: se crea uno nuevo y vacío
+        CarritoResponseDTO recuperado = despuesDeUnaCaida().obtenerCarritoActivo(usuarioId);
+        assertNotEquals(carritoId, recuperado.id());
+        assertTrue(recuperado.items().isEmpty());
+    }
+    
+    @Test
+    void checkoutFallidoConservaLoPendiente() {
+        carritoService.actualizarCantidad(usuarioId, agregar(2).id(), 5);
+        productoService.actualizarStock(productoId, -3);
+        
+        assertThrows(InsufficientStockException.class,
+                () -> pedidoService.crearDesdeCarrito(usuarioId, DatosPrueba.DIRECCION));
+        
+        // El UPDATE del checkout se revirtió con él, pero el cambio vuelve a quedar pendiente en memoria
+        assertEquals(2, cantidadRecuperada());
+        assertEquals(5, carritoService.obtenerCarritoActivo(usuarioId).items().get(0).cantidad());
+        carritoStore.flushPeriodico();
+        assertEquals(5, cantidadRecuperada());
+    }
+    
+    private CarritoItemResponseDTO agregar(int cantidad) {
+        return carritoService.agregarProducto(usuarioId, new CarritoItemRequestDTO(productoId, cantidad))
+                .items().get(0);
+    }
+    
+    private int cantidadRecuperada() {
+        return despuesDeUnaCaida().obtenerCarritoActivo(usuarioId).items().get(0).cantidad();
+    }
+    
+    private CarritoService despuesDeUnaCaida() {
+        CarritoStore nuevo = new CarritoStore(carritoRepository, carritoItemRepository, productoRepository,
+                usuarioRepository, jdbcTemplate, transactionTemplate);
+        ReflectionTestUtils.setField(nuevo, "inactividadMs", 1_800_000L);
+        return new CarritoService(carritoRepository, nuevo, productoService);
+    }
+}
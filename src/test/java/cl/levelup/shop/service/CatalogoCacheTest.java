@@ -0,0 +1,80 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+// Sin transacción activa los cambios de stock y las invalidaciones se aplican al instante
+class CatalogoCacheTest {
+    
+    private final CatalogoCache cache = new CatalogoCache(60_000);
+    
+    @Test
+    void cadaCambioDeStockCambiaElETagDeLoQueSeLeeDelSnapshot() {
+        cache.obtener(this::cargar);
+        VersionCatalogo antes = cache.versionActual();
+        
+        cache.actualizarStock(Map.of(1L, 3));
+        VersionCatalogo despues = cache.versionActual();
+        
+        assertNotEquals(antes, despues);
+        assertEquals(3, cache.obtener(this::cargar).porId().get(1L).stock());
+        cache.actualizarStock(Map.of(1L, 2));
+        assertNotEquals(despues, cache.versionActual());
+    }
+    
+    @Test
+    void losListadosQuedanFijosHastaElIntervaloDePublicacion() {
+        ListadosCatalogo antes = cache.listados(this::cargar);
+        VersionCatalogo etag = cache.versionListados();
+        
+        cache.actualizarStock(Map.of(1L, 3));
+        
+        // Mismo ETag, mismo snapshot: los bytes de cualquier variante no cambian dentro de la revisión
+        assertEquals(etag, cache.versionListados());
+        assertSame(antes, cache.listados(this::cargar));
+        assertEquals(5, cache.listados(this::cargar).snapshot().porId().get(1L).stock());
+    }
+    
+    @Test
+    void sinIntervaloLosListadosTomanElStockNuevo() {
+        CatalogoCache inmediato = new CatalogoCache(0);
+        ListadosCatalogo antes = inmediato.listados(this::cargar);
+        
+        inmediato.actualizarStock(Map.of(1L, 3));
+        ListadosCatalogo despues = inmediato.listados(this::cargar);
+        
+        assertEquals(antes.revision() + 1, despues.revision());
+        assertEquals(3, despues.snapshot().porId().get(1L).stock());
+        assertSame(despues, inmediato.listados(this::cargar));
+    }
+    
+    @Test
+    void invalidarCambiaAmbosETagsAlInstante() {
+        cache.listados(this::cargar);
+        VersionCatalogo version = cache.versionActual();
+        VersionCatalogo listados = cache.versionListados();
+        
+        cache.invalidar();
+        
+        assertNotEquals(version, cache.versionActual());
+        assertNotEquals(listados, cache.versionListados());
+        assertEquals(cache.getVersion(), cache.listados(this::cargar).snapshot().version());
+    }
+    
+    private CatalogoSnapshot cargar(long version) {
+        return CatalogoSnapshot.construir(version, List.of(producto(1L, 5), producto(2L, 8)));
+    }
+    
+    private static ProductoResponseDTO producto(Long id, int stock) {
+        return new ProductoResponseDTO(id, "MS" + id, "Producto " + id, "MS", "Categoría MS",
+                BigDecimal.valueOf(10_000), stock, "Marca", BigDecimal.ONE, null, null, null, null, true);
+    }
+}
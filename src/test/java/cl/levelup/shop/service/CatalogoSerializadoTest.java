@@ -0,0 +1,89 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CatalogoSerializadoTest {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CatalogoSerializado serializado = new CatalogoSerializado(objectMapper);
+    private final AtomicInteger cargas = new AtomicInteger();
+    
+    @Test
+    void serializaYComprimeUnaVezPorVersionYVariante() throws IOException {
+        RespuestaSerializada primera = serializado.obtener(1, "activos", productos("A"));
+        RespuestaSerializada segunda = serializado.obtener(1, "activos", productos("A"));
+        
+        assertSame(primera, segunda);
+        assertEquals(1, cargas.get());
+        assertArrayEquals(objectMapper.writeValueAsBytes(List.of(producto("A"))), primera.json());
+        assertArrayEquals(primera.json(), descomprimir(primera.gzip()));
+        
+        serializado.obtener(1, "categoria:MS", productos("B"));
+        assertEquals(2, cargas.get());
+    }
+    
+    @Test
+    void unaVersionNuevaDescartaLasVariantesAnteriores() {
+        serializado.obtener(1, "activos", productos("A"));
+        serializado.obtener(1, "categoria:MS", productos("A"));
+        RespuestaSerializada nueva = serializado.obtener(2, "activos", productos("B"));
+        
+        assertEquals(3, cargas.get());
+        assertSame(nueva, serializado.obtener(2, "activos", productos("C")));
+        serializado.obtener(2, "categoria:MS", productos("C"));
+        assertEquals(4, cargas.get());
+    }
+    
+    @Test
+    void unaVersionAtrasadaRespondeSoloJsonSinGuardarlo() {
+        RespuestaSerializada vigente = serializado.obtener(2, "activos", productos("B"));
+        
+        RespuestaSerializada atrasada = serializado.obtener(1, "activos", productos("A"));
+        assertNotNull(atrasada.json());
+        assertNull(atrasada.gzip());
+        assertSame(vigente, serializado.obtener(2, "activos", productos("C")));
+    }
+    
+    @Test
+    void sinCacheNoComprime() {
+        RespuestaSerializada respuesta = serializado.sinCache(List.of());
+        
+        assertArrayEquals("[]".getBytes(StandardCharsets.UTF_8), respuesta.json());
+        assertNull(respuesta.gzip());
+    }
+    
+    private Supplier<List<ProductoResponseDTO>> productos(String nombre) {
+        return () -> {
+            cargas.incrementAndGet();
+            return List.of(producto(nombre));
+        };
+    }
+    
+    private static ProductoResponseDTO producto(String nombre) {
+        return new ProductoResponseDTO(1L, "MS001", nombre, "MS", "Mouse", BigDecimal.TEN, 1, "Logitech",
+                BigDecimal.ONE, null, null, null, null, true);
+    }
+    
+    private static byte[] descomprimir(byte[] gzip) throws IOException {
+        try (GZIPInputStream entrada = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            return entrada.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CatalogoSnapshotTest {
+    
+    private final CatalogoSnapshot snapshot = CatalogoSnapshot.construir(7, List.of(
+            producto(1L, "MS", 5, true),
+            producto(2L, "AC", 2, true),
+            producto(3L, "MS", 4, false),
+            producto(4L, "MS", 9, true)
+    ));
+    
+    @Test
+    void construirIndexaTodosPeroSoloListaLosActivos() {
+        assertEquals(7, snapshot.version());
+        assertEquals(List.of(1L, 2L, 4L), snapshot.activos().stream().map(ProductoResponseDTO::id).toList());
+        assertEquals(4, snapshot.porId().size());
+        assertEquals(3L, snapshot.porCode().get("MS3").id());
+        assertEquals(List.of(1L, 4L), snapshot.activosDeCategoria("MS").stream().map(ProductoResponseDTO::id).toList());
+        assertEquals(List.of(), snapshot.activosDeCategoria("XX"));
+    }
+    
+    @Test
+    void conStockReemplazaElProductoEnTodosLosIndices() {
+        CatalogoSnapshot actualizado = snapshot.conStock(Map.of(4L, 0));
+        
+        assertEquals(0, actualizado.porId().get(4L).stock());
+        assertEquals(0, actualizado.porCode().get("MS4").stock());
+        assertEquals(0, actualizado.activos().get(2).stock());
+        assertEquals(0, actualizado.activosDeCategoria("MS").get(1).stock());
+        assertEquals(List.of(1L, 2L), actualizado.facetas().filtrar(new FiltroFacetas(null, null, null, null, true))
+                .stream().map(ProductoResponseDTO::id).toList());
+        assertEquals(7, actualizado.version());
+        
+        // El snapshot original sigue intacto y lo que no cambió se comparte
+        assertEquals(9, snapshot.porId().get(4L).stock());
+        assertSame(snapshot.activosDeCategoria("AC"), actualizado.activosDeCategoria("AC"));
+    }
+    
+    @Test
+    void conStockDeUnInactivoNoTocaLasListasNiLasFacetas() {
+        CatalogoSnapshot actualizado = snapshot.conStock(Map.of(3L, 1));
+        
+        assertEquals(1, actualizado.porId().get(3L).stock());
+        assertSame(snapshot.activos(), actualizado.activos());
+        assertSame(snapshot.facetas(), actualizado.facetas());
+    }
+    
+    @Test
+    void conStockIgnoraProductosDesconocidosYStockSinCambios() {
+        CatalogoSnapshot actualizado = snapshot.conStock(Map.of(99L, 3, 1L, 5));
+        
+        assertNull(actualizado.porId().get(99L));
+        assertSame(snapshot.porId().get(1L), actualizado.porId().get(1L));
+        assertSame(snapshot.facetas(), actualizado.facetas());
+        assertEquals(snapshot.activos(), actualizado.activos());
+    }
+    
+    private static ProductoResponseDTO producto(Long id, String categoria, int stock, boolean activo) {
+        return new ProductoResponseDTO(id, categoria + id, "Producto " + id, categoria, "Categoría " + categoria,
+                BigDecimal.valueOf(10_000), stock, "Marca", BigDecimal.ONE, null, null, null, null, activo);
+    }
+}
@@ -0,0 +1,80 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.DatosPrueba;
+import cl.levelup.shop.PruebaBaseDatos;
+import cl.levelup.shop.dto.request.PedidoItemRequestDTO;
+import cl.levelup.shop.dto.request.PedidoRequestDTO;
+import cl.levelup.shop.entity.Categoria;
+import cl.levelup.shop.repository.ProductoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// 64 checkouts simultáneos sobre los mismos SKU, la mitad con los items en orden inverso:
+// con el bloqueo por id ascendente ninguno puede terminar en deadlock
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CheckoutContencionTest extends PruebaBaseDatos {
+    
+    private static final int CONCURRENTES = 64;
+    private static final int RONDAS = 5;
+    private static final int PRODUCTOS = 4;
+    private static final int STOCK_INICIAL = 1000;
+    
+    @Autowired
+    private PedidoService pedidoService;
+    
+    @Autowired
+    private ProductoRepository productoRepository;
+    
+    @Autowired
+    private DatosPrueba datos;
+    
+    private final ExecutorService hilos = Executors.newFixedThreadPool(CONCURRENTES);
+    
+    @AfterEach
+    void tearDown() {
+        hilos.shutdownNow();
+    }
+    
+    @Test
+    void checkoutsCruzadosTerminanSinDeadlock() throws Exception {
+        Long usuarioId = datos.usuario().getId();
+        Categoria categoria = datos.categoria();
+        List<PedidoItemRequestDTO> items = new ArrayList<>(PRODUCTOS);
+        for (int i = 0; i < PRODUCTOS; i++) {
+            items.add(new PedidoItemRequestDTO(datos.producto(categoria, STOCK_INICIAL).getId(), 1, DatosPrueba.PRECIO));
+        }
+        List<PedidoItemRequestDTO> invertidos = new ArrayList<>(items);
+        Collections.reverse(invertidos);
+        
+        List<Callable<Long>> tareas = new ArrayList<>(CONCURRENTES);
+        for (int i = 0; i < CONCURRENTES; i++) {
+            PedidoRequestDTO request = new PedidoRequestDTO(usuarioId, DatosPrueba.DIRECCION,
+                    i % 2 == 0 ? items : invertidos);
+            tareas.add(() -> pedidoService.crear(request).id());
+        }
+        
+        for (int ronda = 0; ronda < RONDAS; ronda++) {
+            // Un deadlock o un timeout del pool llega como excepción en get() y hace fallar la prueba
+            for (Future<Long> resultado : hilos.invokeAll(tareas)) {
+                resultado.get();
+            }
+        }
+        
+        for (PedidoItemRequestDTO item : items) {
+            assertEquals(STOCK_INICIAL - CONCURRENTES * RONDAS, productoRepository.findStockById(item.productoId()));
+        }
+    }
+}
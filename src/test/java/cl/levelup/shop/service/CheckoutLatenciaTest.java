@@ -0,0 +1,171 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.DatosPrueba;
+import cl.levelup.shop.PruebaBaseDatos;
+import cl.levelup.shop.SecuenciasSql;
+import cl.levelup.shop.dto.request.PedidoItemRequestDTO;
+import cl.levelup.shop.dto.request.PedidoRequestDTO;
+import cl.levelup.shop.entity.Categoria;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checkout de un pedido de 50 líneas con ids de secuencia e INSERT/UPDATE en lote, contra la línea base
+// IDENTITY: un INSERT por fila para obtener cada id generado y un UPDATE de stock por producto. La línea
+// base escribe en copias de pedidos y pedido_items con AUTO_INCREMENT y bloquea los mismos productos.
+// Las medianas quedan en el reporte de la prueba
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CheckoutLatenciaTest extends PruebaBaseDatos {
+    
+    private static final int LINEAS = 50;
+    private static final int CALENTAMIENTO = 5;
+    private static final int MEDICIONES = 20;
+    
+    @Autowired
+    private PedidoService pedidoService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private DatosPrueba datos;
+    
+    private Long usuarioId;
+    private List<PedidoItemRequestDTO> items;
+    
+    @BeforeEach
+    void setUp() {
+        usuarioId = datos.usuario().getId();
+        Categoria categoria = datos.categoria();
+        items = new ArrayList<>(LINEAS);
+        for (int i = 0; i < LINEAS; i++) {
+            items.add(new PedidoItemRequestDTO(datos.producto(categoria, 10_000).getId(), 1, DatosPrueba.PRECIO));
+        }
+    
+        // Mismas columnas, sin las claves foráneas, con el id que antes generaba la base
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS pedidos_identidad LIKE pedidos");
+        jdbcTemplate.execute("ALTER TABLE pedidos_identidad MODIFY id BIGINT NOT NULL AUTO_INCREMENT");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS pedido_items_identidad LIKE pedido_items");
+        jdbcTemplate.execute("ALTER TABLE pedido_items_identidad MODIFY id BIGINT NOT NULL AUTO_INCREMENT");
+    }
+    
+    @Test
+    void unPedidoDeCincuentaLineasUsaLasMismasSentenciasQueUnoDeUna() {
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    
+        long conUnaLinea = contarSentencias(estadisticas, items.subList(0, 1));
+        long conCincuenta = contarSentencias(estadisticas, items);
+    
+        // Usuario, SELECT ... FOR UPDATE de los productos y un lote por tabla: pedido, items y stock
+        assertEquals(5, conUnaLinea);
+        assertEquals(conUnaLinea, conCincuenta);
+    }
+    
+    @Test
+    void checkoutConSecuenciasEsMasRapidoQueLaLineaBaseIdentity(TestReporter reporte) {
+        PedidoRequestDTO request = new PedidoRequestDTO(usuarioId, DatosPrueba.DIRECCION, items);
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            pedidoService.crear(request);
+            checkoutIdentity();
+        }
+    
+        // Intercaladas para que una variación de la máquina afecte a las dos por igual
+        long[] secuencias = new long[MEDICIONES];
+        long[] identidad = new long[MEDICIONES];
+        for (int i = 0; i < MEDICIONES; i++) {
+            secuencias[i] = medir(() -> pedidoService.crear(request));
+            identidad[i] = medir(this::checkoutIdentity);
+        }
+        long medianaSecuencias = mediana(secuencias);
+        long medianaIdentidad = mediana(identidad);
+    
+        reporte.publishEntry("checkout 50 líneas, secuencias y lotes, p50 µs", Long.toString(medianaSecuencias));
+        reporte.publishEntry("checkout 50 líneas, IDENTITY, p50 µs", Long.toString(medianaIdentidad));
+        assertTrue(medianaSecuencias < medianaIdentidad,
+                "secuencias " + medianaSecuencias + " µs, IDENTITY " + medianaIdentidad + " µs");
+    }
+    
+    // Lo que hacía el checkout con IDENTITY: Hibernate ejecuta el INSERT en cuanto persiste cada entidad
+    // para leer su id, así que ni los items ni los UPDATE de stock podían ir en lote
+    private void checkoutIdentity() {
+        List<Long> productoIds = items.stream().map(PedidoItemRequestDTO::productoId).toList();
+        String marcadores = String.join(", ", Collections.nCopies(productoIds.size(), "?"));
+        BigDecimal total = DatosPrueba.PRECIO.multiply(BigDecimal.valueOf(LINEAS));
+    
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("SELECT email FROM usuarios WHERE id = ?", String.class, usuarioId);
+            jdbcTemplate.queryForList("SELECT id, stock FROM productos WHERE id IN (" + marcadores + ") ORDER BY id FOR UPDATE",
+                    productoIds.toArray());
+    
+            Long pedidoId = insertarConId("INSERT INTO pedidos_identidad (usuario_id, total, estado, direccion_envio, " +
+                    "fecha_pedido) VALUES (?, ?, 'PENDIENTE', ?, NOW())", usuarioId, total, DatosPrueba.DIRECCION);
+            for (PedidoItemRequestDTO item : items) {
+                insertarConId("INSERT INTO pedido_items_identidad (pedido_id, producto_id, cantidad, precio_unitario, " +
+                        "subtotal) VALUES (?, ?, ?, ?, ?)", pedidoId, item.productoId(), item.cantidad(),
+                        item.precioUnitario(), item.precioUnitario());
+            }
+            for (PedidoItemRequestDTO item : items) {
+                jdbcTemplate.update("UPDATE productos SET stock = stock - ? WHERE id = ?", item.cantidad(), item.productoId());
+            }
+        });
+    }
+    
+    private Long insertarConId(String sql, Object... valores) {
+        KeyHolder id = new GeneratedKeyHolder();
+        jdbcTemplate.update(conexion -> {
+            PreparedStatement sentencia = conexion.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            for (int i = 0; i < valores.length; i++) {
+                sentencia.setObject(i + 1, valores[i]);
+            }
+            return sentencia;
+        }, id);
+        return id.getKey().longValue();
+    }
+    
+    private long contarSentencias(Statistics estadisticas, List<PedidoItemRequestDTO> lineas) {
+        estadisticas.clear();
+        SecuenciasSql.reiniciar();
+        pedidoService.crear(new PedidoRequestDTO(usuarioId, DatosPrueba.DIRECCION, lineas));
+        return estadisticas.getPrepareStatementCount() - SecuenciasSql.lecturas();
+    }
+    
+    private static long medir(Runnable checkout) {
+        long inicio = System.nanoTime();
+        checkout.run();
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - inicio);
+    }
+    
+    private static long mediana(long[] muestras) {
+        long[] ordenadas = muestras.clone();
+        Arrays.sort(ordenadas);
+        return ordenadas[ordenadas.length / 2];
+    }
+}
@@ -0,0 +1,102 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import cl.levelup.shop.dto.response.ValorFacetaDTO;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FacetasIndexTest {
+    
+    private final List<ProductoResponseDTO> activos = List.of(
+            producto(1L, "MS", "Logitech", 15_000, 5, "4.5"),
+            producto(2L, "MS", "LOGITECH", 45_000, 0, "3.2"),
+            producto(3L, "AC", "Razer", 80_000, 3, "2.0"),
+            producto(4L, "AC", null, 350_000, 1, null)
+    );
+    
+    private final FacetasIndex facetas = FacetasIndex.construir(activos);
+    
+    @Test
+    void sinFiltrosRetornaTodosLosProductos() {
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(facetas.filtrar(filtro(null, null, null, null, null))));
+    }
+    
+    @Test
+    void combinaValoresDeUnaFacetaConOrYFacetasConAnd() {
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(facetas.filtrar(filtro(Set.of("MS", "AC"), null, null, null, null))));
+        assertEquals(List.of(1L), ids(facetas.filtrar(filtro(Set.of("MS"), null, null, null, true))));
+        assertEquals(List.of(3L), ids(facetas.filtrar(filtro(Set.of("AC"), null, Set.of("50000-100000"), null, null))));
+    }
+    
+    @Test
+    void filtraMarcaSinDistinguirMayusculas() {
+        assertEquals(List.of(1L, 2L), ids(facetas.filtrar(filtro(null, Set.of(" logitech "), null, null, null))));
+    }
+    
+    @Test
+    void ratingMinimoEsAcumulativo() {
+        assertEquals(List.of(1L, 2L), ids(facetas.filtrar(filtro(null, null, null, 3, null))));
+        assertEquals(List.of(), ids(facetas.filtrar(filtro(null, null, null, 5, null))));
+    }
+    
+    @Test
+    void valoresDesconocidosNoCoincidenConNada() {
+        assertEquals(List.of(), ids(facetas.filtrar(filtro(Set.of("XX"), null, null, null, null))));
+    }
+    
+    @Test
+    void cuentaCadaFacetaSinAplicarSuPropioFiltro() {
+        Map<String, List<ValorFacetaDTO>> conteos = facetas.contar(filtro(Set.of("MS"), null, null, null, null));
+        
+        // La categoría ignora su propia selección para mostrar cuántos agregaría marcar otra
+        assertEquals(Map.of("AC", 2, "MS", 2), cantidades(conteos.get(FacetasIndex.CATEGORIA)));
+        assertEquals(Map.of("logitech", 2, "razer", 0), cantidades(conteos.get(FacetasIndex.MARCA)));
+        assertEquals("Logitech", conteos.get(FacetasIndex.MARCA).get(0).etiqueta());
+        assertEquals(Map.of("0-20000", 1, "20000-50000", 1, "50000-100000", 0, "100000-300000", 0, "300000+", 0),
+                cantidades(conteos.get(FacetasIndex.PRECIO)));
+        assertEquals(Map.of("true", 1), cantidades(conteos.get(FacetasIndex.STOCK)));
+    }
+    
+    @Test
+    void conProductosRecalculaSoloElStock() {
+        List<ProductoResponseDTO> vendidos = List.of(
+                producto(1L, "MS", "Logitech", 15_000, 0, "4.5"),
+                producto(2L, "MS", "LOGITECH", 45_000, 7, "3.2"),
+                activos.get(2),
+                activos.get(3)
+        );
+        FacetasIndex actualizado = facetas.conProductos(vendidos);
+        
+        assertEquals(List.of(2L, 3L, 4L), ids(actualizado.filtrar(filtro(null, null, null, null, true))));
+        assertEquals(7, actualizado.filtrar(filtro(null, Set.of("logitech"), null, null, true)).get(0).stock());
+        assertEquals(List.of(1L, 2L), ids(actualizado.filtrar(filtro(Set.of("MS"), null, null, null, null))));
+        // El índice original no cambia
+        assertEquals(List.of(1L, 3L, 4L), ids(facetas.filtrar(filtro(null, null, null, null, true))));
+    }
+    
+    static ProductoResponseDTO producto(Long id, String categoria, String marca, long precio, int stock, String rating) {
+        return new ProductoResponseDTO(id, categoria + id, "Producto " + id, categoria, "Categoría " + categoria,
+                BigDecimal.valueOf(precio), stock, marca, rating == null ? null : new BigDecimal(rating),
+                null, null, null, null, true);
+    }
+    
+    private static FiltroFacetas filtro(Set<String> categorias, Set<String> marcas, Set<String> precios,
+                                        Integer ratingMinimo, Boolean conStock) {
+        return new FiltroFacetas(categorias, marcas, precios, ratingMinimo, conStock);
+    }
+    
+    private static List<Long> ids(List<ProductoResponseDTO> productos) {
+        return productos.stream().map(ProductoResponseDTO::id).collect(Collectors.toList());
+    }
+    
+    private static Map<String, Integer> cantidades(List<ValorFacetaDTO> valores) {
+        return valores.stream().collect(Collectors.toMap(ValorFacetaDTO::valor, ValorFacetaDTO::cantidad));
+    }
+}
@@ -0,0 +1,159 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.exception.BadRequestException;
+import cl.levelup.shop.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotenciaStoreTest {
+    
+    private final AtomicInteger ejecuciones = new AtomicInteger();
+    private final ExecutorService hilos = Executors.newFixedThreadPool(2);
+    
+    @AfterEach
+    void tearDown() {
+        hilos.shutdownNow();
+    }
+    
+    @Test
+    void sinClaveEjecutaSiempre() {
+        IdempotenciaStore store = new IdempotenciaStore(60_000, 1_000, 100);
+        
+        store.ejecutar("checkout", 1L, null, "a", ejecuciones::incrementAndGet);
+        store.ejecutar("checkout", 1L, " ", "a", ejecuciones::incrementAndGet);
+        assertEquals(2, ejecuciones.get());
+    }
+    
+    @Test
+    void unReintentoRecibeLaMismaRespuesta() {
+        IdempotenciaStore store = new IdempotenciaStore(60_000, 1_000, 100);
+        
+        int primera = store.ejecutar("checkout", 1L, "k", "a", ejecuciones::incrementAndGet);
+        int reintento = store.ejecutar("checkout", 1L, "k", "a", ejecuciones::incrementAndGet);
+        assertEquals(1, primera);
+        assertEquals(1, reintento);
+        
+        // La clave se acota a la operación y al usuario
+        assertEquals(2, store.ejecutar("checkout", 2L, "k", "a", ejecuciones::incrementAndGet));
+        assertEquals(3, store.ejecutar("pago", 1L, "k", "a", ejecuciones::incrementAndGet));
+    }
+    
+    @Test
+    void unaRespuestaVencidaSeVuelveACalcular() {
+        IdempotenciaStore store = new IdempotenciaStore(-1, 1_000, 100);
+        
+        store.ejecutar("checkout", 1L, "k", "a", ejecuciones::incrementAndGet);
+        store.ejecutar("checkout", 1L, "k", "a", ejecuciones::incrementAndGet);
+        assertEquals(2, ejecuciones.get());
+    }
+    
+    @Test
+    void laMismaClaveConOtraSolicitudSeRechaza() {
+        IdempotenciaStore store = new IdempotenciaStore(60_000, 1_000, 100);
+        
+        store.ejecutar("checkout", 1L, "k", "a", ejecuciones::incrementAndGet);
+        assertThrows(BadRequestException.class,
+                () -> store.ejecutar("checkout", 1L, "k", "b", ejecuciones::incrementAndGet));
+    }
+    
+    @Test
+    void unFalloNoSeGuardaYLiberaLaClave() {
+        IdempotenciaStore store = new IdempotenciaStore(60_000, 1_000, 100);
+        
+        assertThrows(IllegalStateException.class, () -> store.ejecutar("checkout", 1L, "k", "a", () -> {
+            ejecuciones.incrementAndGet();
+            throw new IllegalStateException("sin stock");
+        }));
+        assertThrows(StackOverflowError.class, () -> store.ejecutar("checkout", 1L, "k", "a", () -> {
+            ejecuciones.incrementAndGet();
+            throw new StackOverflowError();
+        }));
+        assertEquals(3, store.ejecutar("checkout", 1L, "k", "a", ejecuciones::incrementAndGet));
+    }
+    
+    @Test
+    void unDuplicadoConcurrenteEsperaLaPrimeraEjecucion() throws Exception {
+        IdempotenciaStore store = new IdempotenciaStore(60_000, 5_000, 100);
+        CountDownLatch iniciada = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        
+        Future<Integer> primera = hilos.submit(() -> store.ejecutar("checkout", 1L, "k", "a", () -> bloquear(iniciada, liberar)));
+        assertTrue(iniciada.await(5, TimeUnit.SECONDS));
+        Future<Integer> duplicado = hilos.submit(() -> store.ejecutar("checkout", 1L, "k", "a", ejecuciones::incrementAndGet));
+        liberar.countDown();
+        
+        assertEquals(1, primera.get(5, TimeUnit.SECONDS));
+        assertEquals(1, duplicado.get(5, TimeUnit.SECONDS));
+        assertEquals(1, ejecuciones.get());
+    }
+    
+    @Test
+    void unDuplicadoNoEsperaMasQueElLimite() throws Exception {
+        IdempotenciaStore store = new IdempotenciaStore(60_000, 50, 100);
+        CountDownLatch iniciada = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        
+        hilos.submit(() -> store.ejecutar("checkout", 1L, "k", "a", () -> bloquear(iniciada, liberar)));
+        assertTrue(iniciada.await(5, TimeUnit.SECONDS));
+        try {
+            ServiceUnavailableException e = assertThrows(ServiceUnavailableException.class,
+                    () -> store.ejecutar("checkout", 1L, "k", "a", ejecuciones::incrementAndGet));
+            assertEquals(1L, e.getRetryAfterSegundos());
+        } finally {
+            liberar.countDown();
+        }
+    }
+    
+    @Test
+    void llenoDeRespuestasTerminadasOlvidaUnaParte() {
+        IdempotenciaStore store = new IdempotenciaStore(60_000, 1_000, 10);
+        for (int i = 0; i < 50; i++) {
+            store.ejecutar("checkout", 1L, "k" + i, "a", ejecuciones::incrementAndGet);
+        }
+        
+        // Como mucho 10 siguen guardadas: el resto se vuelve a ejecutar
+        int antes = ejecuciones.get();
+        for (int i = 0; i < 50; i++) {
+            store.ejecutar("checkout", 1L, "k" + i, "a", ejecuciones::incrementAndGet);
+        }
+        assertTrue(ejecuciones.get() - antes >= 40);
+    }
+    
+    @Test
+    void llenoDeSolicitudesEnCursoResponde503() throws Exception {
+        IdempotenciaStore store = new IdempotenciaStore(60_000, 1_000, 1);
+        CountDownLatch iniciada = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        
+        hilos.submit(() -> store.ejecutar("checkout", 1L, "k", "a", () -> bloquear(iniciada, liberar)));
+        assertTrue(iniciada.await(5, TimeUnit.SECONDS));
+        try {
+            assertThrows(ServiceUnavailableException.class,
+                    () -> store.ejecutar("checkout", 1L, "otra", "a", ejecuciones::incrementAndGet));
+        } finally {
+            liberar.countDown();
+        }
+    }
+    
+    private int bloquear(CountDownLatch iniciada, CountDownLatch liberar) {
+        int ejecucion = ejecuciones.incrementAndGet();
+        iniciada.countDown();
+        try {
+            liberar.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return ejecucion;
+    }
+}
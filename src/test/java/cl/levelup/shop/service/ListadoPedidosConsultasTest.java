@@ -0,0 +1,141 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.DatosPrueba;
+import cl.levelup.shop.PruebaBaseDatos;
+import cl.levelup.shop.dto.response.PedidoResponseDTO;
+import cl.levelup.shop.entity.Categoria;
+import cl.levelup.shop.entity.Pedido;
+import cl.levelup.shop.entity.PedidoItem;
+import cl.levelup.shop.entity.Producto;
+import cl.levelup.shop.entity.Usuario;
+import cl.levelup.shop.entity.enums.EstadoPedido;
+import cl.levelup.shop.repository.PedidoItemRepository;
+import cl.levelup.shop.repository.PedidoRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Cada prueba corre en una transacción que se revierte al terminar
+class ListadoPedidosConsultasTest extends PruebaBaseDatos {
+    
+    private static final int LOTE_IN = 500;
+    
+    @Autowired
+    private PedidoService pedidoService;
+    
+    @Autowired
+    private PedidoRepository pedidoRepository;
+    
+    @Autowired
+    private PedidoItemRepository pedidoItemRepository;
+    
+    @Autowired
+    private EntityManager entityManager;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private DatosPrueba datos;
+    
+    private Statistics estadisticas;
+    private List<Producto> productos;
+    
+    @BeforeEach
+    void setUp() {
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Categoria categoria = datos.categoria();
+        productos = List.of(datos.producto(categoria, 1000), datos.producto(categoria, 1000),
+                datos.producto(categoria, 1000));
+    }
+    
+    @Test
+    void listadoPorUsuarioNoCreceConLosPedidos() {
+        Usuario conUnPedido = datos.usuario();
+        Usuario conMuchos = datos.usuario();
+        crearPedidos(conUnPedido, 1);
+        crearPedidos(conMuchos, 40);
+        
+        // Pedidos con su usuario en una consulta, items con su producto en otra
+        assertEquals(2, contarSentencias(() -> pedidoService.obtenerPorUsuario(conUnPedido.getId())));
+        assertEquals(2, contarSentencias(() -> pedidoService.obtenerPorUsuario(conMuchos.getId())));
+    }
+    
+    @Test
+    void listadoPorUsuarioIncluyeItemsYUsuario() {
+        Usuario usuario = datos.usuario();
+        crearPedidos(usuario, 5);
+        entityManager.flush();
+        entityManager.clear();
+        estadisticas.clear();
+        
+        List<PedidoResponseDTO> pedidos = pedidoService.obtenerPorUsuario(usuario.getId());
+        
+        assertEquals(5, pedidos.size());
+        for (PedidoResponseDTO pedido : pedidos) {
+            assertEquals(usuario.getEmail(), pedido.usuarioEmail());
+            assertEquals(productos.size(), pedido.items().size());
+        }
+        // Ni el usuario ni los productos se cargan de forma perezosa después de las consultas
+        assertEquals(0, estadisticas.getEntityFetchCount());
+    }
+    
+    @Test
+    void listadosGeneralesUsanUnaConsultaDeItemsPorLote() {
+        crearPedidos(datos.usuario(), 40);
+        
+        // La base es compartida: el total de pedidos incluye los confirmados por otras pruebas
+        int total = pedidoService.obtenerTodos().size();
+        assertTrue(total >= 40);
+        assertEquals(1 + lotes(total), contarSentencias(() -> pedidoService.obtenerTodos()));
+        
+        int pendientes = pedidoService.obtenerPorEstado(EstadoPedido.PENDIENTE).size();
+        assertEquals(1 + lotes(pendientes), contarSentencias(() -> pedidoService.obtenerPorEstado(EstadoPedido.PENDIENTE)));
+    }
+    
+    private long contarSentencias(Supplier<List<PedidoResponseDTO>> listado) {
+        // Sin las entidades de la preparación en el contexto de persistencia, como en una request nueva
+        entityManager.flush();
+        entityManager.clear();
+        estadisticas.clear();
+        listado.get();
+        return estadisticas.getPrepareStatementCount();
+    }
+    
+    private static int lotes(int pedidos) {
+        return (pedidos + LOTE_IN - 1) / LOTE_IN;
+    }
+    
+    private void crearPedidos(Usuario usuario, int cantidad) {
+        for (int i = 0; i < cantidad; i++) {
+            Pedido pedido = pedidoRepository.save(Pedido.builder()
+                    .usuario(usuario)
+                    .total(DatosPrueba.PRECIO.multiply(BigDecimal.valueOf(productos.size())))
+                    .direccionEnvio(DatosPrueba.DIRECCION)
+                    .build());
+            List<PedidoItem> items = new ArrayList<>(productos.size());
+            for (Producto producto : productos) {
+                items.add(PedidoItem.builder()
+                        .pedido(pedido)
+                        .producto(producto)
+                        .cantidad(1)
+                        .precioUnitario(DatosPrueba.PRECIO)
+                        .subtotal(DatosPrueba.PRECIO)
+                        .build());
+            }
+            pedidoItemRepository.saveAll(items);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package cl.levelup.shop.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NormalizadorTextoTest {
+    
+    @Test
+    void normalizarQuitaTildesYMayusculas() {
+        assertEquals("camara logitech nandu", NormalizadorTexto.normalizar("Cámara LOGITECH Ñandú"));
+        assertEquals("", NormalizadorTexto.normalizar(null));
+    }
+    
+    @Test
+    void tokenizarSeparaPorSignosYDescartaStopwords() {
+        assertEquals(List.of("mous", "gamer", "g502", "rgb"), NormalizadorTexto.tokenizar("Mouse gamer, G502 (con RGB)"));
+        assertEquals(List.of(), NormalizadorTexto.tokenizar("de la y"));
+        assertEquals(List.of(), NormalizadorTexto.tokenizar(null));
+    }
+    
+    @Test
+    void tokenizarSingularizaPluralesSimples() {
+        assertEquals(List.of("consola", "auricular"), NormalizadorTexto.tokenizar("Consolas auriculares"));
+        assertEquals(List.of("auricular", "luz", "red"), NormalizadorTexto.tokenizar("Auricular luces redes"));
+        // Sin la "e" tras consonante, el singular y el plural que solo agrega "s" quedan iguales
+        assertEquals(List.of("parlant", "parlant", "mous"), NormalizadorTexto.tokenizar("parlante parlantes mouses"));
+        // Palabras cortas, terminadas en "ss" o en número + s quedan igual
+        assertEquals(List.of("gas", "boss", "ps5s"), NormalizadorTexto.tokenizar("gas boss ps5s"));
+    }
+}
@@ -0,0 +1,180 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.DatosPrueba;
+import cl.levelup.shop.PasarelaEnPrueba;
+import cl.levelup.shop.PruebaBaseDatos;
+import cl.levelup.shop.dto.TransbankInitResponseDTO;
+import cl.levelup.shop.entity.Pedido;
+import cl.levelup.shop.entity.Usuario;
+import cl.levelup.shop.repository.PedidoRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Pagos iniciados en paralelo contra una pasarela lenta: el pool de conexiones no debe
+// depender de cuánto tarde Transbank, solo del trabajo en la BD
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PagoConexionesTest extends PruebaBaseDatos {
+    
+    private static final int CONCURRENTES = 32;
+    
+    @Autowired
+    private TransbankService transbankService;
+    
+    @Autowired
+    private PedidoRepository pedidoRepository;
+    
+    @Autowired
+    private PasarelaEnPrueba pasarela;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @Autowired
+    private DatosPrueba datos;
+    
+    private final ExecutorService hilos = Executors.newFixedThreadPool(CONCURRENTES + 1);
+    private HikariPoolMXBean pool;
+    private Usuario usuario;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+        usuario = datos.usuario();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        pasarela.liberar();
+        pasarela.setLatenciaMs(0);
+        hilos.shutdownNow();
+    }
+    
+    @Test
+    void llamadaRemotaNoRetieneConexiones() throws Exception {
+        List<Long> pedidoIds = crearPedidos();
+        pasarela.retener();
+        List<Future<TransbankInitResponseDTO>> respuestas = new ArrayList<>();
+        for (Callable<TransbankInitResponseDTO> tarea : iniciarPagos(pedidoIds)) {
+            respuestas.add(hilos.submit(tarea));
+        }
+        
+        esperarHasta(() -> pasarela.getEnCurso() == CONCURRENTES);
+        // Todas las llamadas están esperando a Transbank y ninguna tiene una conexión
+        assertEquals(0, pool.getActiveConnections());
+        // El resto de la tienda sigue usando la BD mientras tanto
+        assertEquals(usuario.getEmail(), pedidoRepository.findConUsuarioById(pedidoIds.get(0))
+                .orElseThrow().getUsuario().getEmail());
+        
+        pasarela.liberar();
+        for (int i = 0; i < respuestas.size(); i++) {
+            String token = respuestas.get(i).get(10, TimeUnit.SECONDS).token();
+            assertEquals(token, pedidoRepository.findById(pedidoIds.get(i)).orElseThrow().getTransbankToken());
+        }
+    }
+    
+    @Test
+    void usoDelPoolNoCreceConLaLatencia() throws Exception {
+        long[] latencias = {20, 200, 1000};
+        long[] ocupaciones = new long[latencias.length];
+        for (int i = 0; i < latencias.length; i++) {
+            pasarela.setLatenciaMs(latencias[i]);
+            List<Callable<TransbankInitResponseDTO>> tareas = iniciarPagos(crearPedidos());
+            
+            Muestreo muestreo = new Muestreo();
+            Future<?> muestreador = hilos.submit(muestreo);
+            for (Future<TransbankInitResponseDTO> respuesta : hilos.invokeAll(tareas)) {
+                assertNotNull(respuesta.get().token());
+            }
+            muestreo.detener();
+            muestreador.get();
+            
+            ocupaciones[i] = muestreo.ocupacionMs();
+        }
+        
+        // Con la llamada dentro de la transacción la ocupación crecería con la latencia (32 x 1 s a 1000 ms);
+        // el margen absorbe la variación del muestreo
+        assertTrue(ocupaciones[latencias.length - 1] <= 2 * ocupaciones[0] + 1_000,
+                "ocupación a " + latencias[latencias.length - 1] + " ms: " + ocupaciones[latencias.length - 1]
+                        + ", a " + latencias[0] + " ms: " + ocupaciones[0]);
+    }
+    
+    private List<Long> crearPedidos() {
+        List<Long> ids = new ArrayList<>(CONCURRENTES);
+        for (int i = 0; i < CONCURRENTES; i++) {
+            ids.add(pedidoRepository.save(Pedido.builder()
+                    .usuario(usuario)
+                    .total(DatosPrueba.PRECIO)
+                    .direccionEnvio(DatosPrueba.DIRECCION)
+                    .build()).getId());
+        }
+        return ids;
+    }
+    
+    private List<Callable<TransbankInitResponseDTO>> iniciarPagos(List<Long> pedidoIds) {
+        List<Callable<TransbankInitResponseDTO>> tareas = new ArrayList<>(pedidoIds.size());
+        for (Long pedidoId : pedidoIds) {
+            tareas.add(() -> transbankService.iniciarTransaccion(pedidoId, usuario.getId()));
+        }
+        return tareas;
+    }
+    
+    private static void esperarHasta(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (!condicion.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < limite, "la condición no se cumplió en 10 s");
+            Thread.sleep(5);
+        }
+    }
+    
+    // Conexiones activas ponderadas por el tiempo que se mantuvieron, mientras corre una ronda
+    private final class Muestreo implements Runnable {
+        
+        private volatile boolean detenido;
+        private long ocupacionNanos;
+        
+        @Override
+        public void run() {
+            long anterior = System.nanoTime();
+            while (!detenido) {
+                int activas = pool.getActiveConnections();
+                long ahora = System.nanoTime();
+                ocupacionNanos += activas * (ahora - anterior);
+                anterior = ahora;
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        
+        void detener() {
+            detenido = true;
+        }
+        
+        long ocupacionMs() {
+            return ocupacionNanos / 1_000_000;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.TransbankCommitResponseDTO;
+import cl.levelup.shop.dto.TransbankInitResponseDTO;
+import cl.levelup.shop.exception.ServiceUnavailableException;
+import cl.levelup.shop.exception.SolicitudPagoInvalidaException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasarelaProtegidaTest {
+    
+    private static final TransbankCommitResponseDTO AUTORIZADA =
+            new TransbankCommitResponseDTO("ORDER-1", "s", 1000.0, "AUTHORIZED", "1234", "VD", "0", null, 0, "6623");
+    
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger llamadas = new AtomicInteger();
+    private volatile Supplier<TransbankCommitResponseDTO> respuesta = () -> AUTORIZADA;
+    
+    @Test
+    void abreElCircuitoAlAlcanzarElUmbralYFallaSinLlamar() {
+        PasarelaProtegida pasarela = pasarela(3, 60_000, 1_000);
+        respuesta = () -> {
+            throw new IllegalStateException("HTTP 503");
+        };
+        
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IllegalStateException.class, () -> pasarela.estado("t"));
+        }
+        assertEquals(PasarelaProtegida.EstadoCircuito.ABIERTO, pasarela.getEstado());
+        
+        ServiceUnavailableException e = assertThrows(ServiceUnavailableException.class, () -> pasarela.estado("t"));
+        assertTrue(e.getRetryAfterSegundos() >= 1);
+        assertEquals(3, llamadas.get());
+        assertEquals(1.0, meterRegistry.counter("pagos.rechazos", "motivo", "circuito").count());
+    }
+    
+    @Test
+    void unExitoReiniciaLosFallosConsecutivos() {
+        PasarelaProtegida pasarela = pasarela(2, 60_000, 1_000);
+        
+        fallar(pasarela);
+        pasarela.estado("t");
+        fallar(pasarela);
+        assertEquals(PasarelaProtegida.EstadoCircuito.CERRADO, pasarela.getEstado());
+    }
+    
+    @Test
+    void laSondaExitosaCierraElCircuito() throws InterruptedException {
+        PasarelaProtegida pasarela = pasarela(1, 50, 1_000);
+        fallar(pasarela);
+        assertEquals(PasarelaProtegida.EstadoCircuito.ABIERTO, pasarela.getEstado());
+        
+        Thread.sleep(80);
+        assertEquals(PasarelaProtegida.EstadoCircuito.SEMI_ABIERTO, pasarela.getEstado());
+        respuesta = () -> AUTORIZADA;
+        assertEquals(AUTORIZADA, pasarela.estado("t"));
+        assertEquals(PasarelaProtegida.EstadoCircuito.CERRADO, pasarela.getEstado());
+    }
+    
+    @Test
+    void laSondaFallidaVuelveAAbrir() throws InterruptedException {
+        PasarelaProtegida pasarela = pasarela(5, 50, 1_000);
+        for (int i = 0; i < 5; i++) {
+            fallar(pasarela);
+        }
+        
+        Thread.sleep(80);
+        // En semi-abierto basta un fallo para volver a abrir, aunque el umbral sea mayor
+        fallar(pasarela);
+        assertEquals(PasarelaProtegida.EstadoCircuito.ABIERTO, pasarela.getEstado());
+    }
+    
+    @Test
+    void elTimeoutCuentaComoFallo() {
+        PasarelaProtegida pasarela = pasarela(1, 60_000, 20);
+        respuesta = () -> {
+            dormir(500);
+            return AUTORIZADA;
+        };
+        
+        assertThrows(ServiceUnavailableException.class, () -> pasarela.estado("t"));
+        assertEquals(PasarelaProtegida.EstadoCircuito.ABIERTO, pasarela.getEstado());
+        assertEquals(1.0, meterRegistry.counter("pagos.rechazos", "motivo", "timeout").count());
+    }
+    
+    @Test
+    void unaSolicitudRechazadaNoAbreElCircuito() {
+        PasarelaProtegida pasarela = pasarela(2, 60_000, 1_000);
+        respuesta = () -> {
+            throw new SolicitudPagoInvalidaException("Invalid value for parameter: token");
+        };
+        
+        for (int i = 0; i < 5; i++) {
+            assertThrows(SolicitudPagoInvalidaException.class, () -> pasarela.estado("basura"));
+        }
+        assertEquals(PasarelaProtegida.EstadoCircuito.CERRADO, pasarela.getEstado());
+        assertEquals(5, llamadas.get());
+    }
+    
+    @Test
+    void unaSondaRechazadaPruebaQueTransbankRespondeYCierra() throws InterruptedException {
+        PasarelaProtegida pasarela = pasarela(1, 50, 1_000);
+        fallar(pasarela);
+        
+        Thread.sleep(80);
+        respuesta = () -> {
+            throw new SolicitudPagoInvalidaException("Transaction not found");
+        };
+        assertThrows(SolicitudPagoInvalidaException.class, () -> pasarela.estado("t"));
+        assertEquals(PasarelaProtegida.EstadoCircuito.CERRADO, pasarela.getEstado());
+    }
+    
+    @Test
+    void sinCupoRechazaSinLlamar() throws Exception {
+        PasarelaProtegida pasarela = new PasarelaProtegida(new PasarelaFalsa(), meterRegistry, 1, 10, 5, 60_000,
+                5_000, 5_000, 5_000);
+        CountDownLatch iniciada = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        respuesta = () -> {
+            iniciada.countDown();
+            esperar(liberar);
+            return AUTORIZADA;
+        };
+        
+        CompletableFuture<TransbankCommitResponseDTO> enCurso = CompletableFuture.supplyAsync(() -> pasarela.estado("t"));
+        assertTrue(iniciada.await(5, TimeUnit.SECONDS));
+        try {
+            assertThrows(ServiceUnavailableException.class, () -> pasarela.estado("t"));
+            assertEquals(1, llamadas.get());
+            assertEquals(1.0, meterRegistry.counter("pagos.rechazos", "motivo", "bulkhead").count());
+        } finally {
+            liberar.countDown();
+        }
+        assertEquals(AUTORIZADA, enCurso.get(5, TimeUnit.SECONDS));
+        // El rechazo por cupo no es una falla de Transbank
+        assertEquals(PasarelaProtegida.EstadoCircuito.CERRADO, pasarela.getEstado());
+    }
+    
+    @Test
+    void usaHilosDaemonConNombreYNoRechazaConUnSoloCupo() {
+        PasarelaProtegida pasarela = new PasarelaProtegida(new PasarelaFalsa(), meterRegistry, 1, 1_000, 5, 60_000,
+                1_000, 1_000, 1_000);
+        AtomicReference<Thread> hilo = new AtomicReference<>();
+        respuesta = () -> {
+            hilo.set(Thread.currentThread());
+            return AUTORIZADA;
+        };
+        
+        // Llamadas seguidas con un solo hilo: la siguiente puede llegar antes de que el hilo anterior quede libre
+        for (int i = 0; i < 50; i++) {
+            assertEquals(AUTORIZADA, pasarela.estado("t"));
+        }
+        assertTrue(hilo.get().isDaemon());
+        assertTrue(hilo.get().getName().startsWith("pasarela-"));
+    }
+    
+    private PasarelaProtegida pasarela(int umbralFallos, long aperturaMs, long timeoutMs) {
+        return new PasarelaProtegida(new PasarelaFalsa(), meterRegistry, 10, 100, umbralFallos, aperturaMs,
+                timeoutMs, timeoutMs, timeoutMs);
+    }
+    
+    private void fallar(PasarelaProtegida pasarela) {
+        Supplier<TransbankCommitResponseDTO> anterior = respuesta;
+        respuesta = () -> {
+            throw new IllegalStateException("HTTP 503");
+        };
+        try {
+            assertThrows(IllegalStateException.class, () -> pasarela.estado("t"));
+        } finally {
+            respuesta = anterior;
+        }
+    }
+    
+    private static void dormir(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private class PasarelaFalsa implements PasarelaPago {
+        
+        @Override
+        public TransbankInitResponseDTO crear(String buyOrder, String sessionId, double amount, String returnUrl) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public TransbankCommitResponseDTO confirmar(String token) {
+            return estado(token);
+        }
+        
+        @Override
+        public TransbankCommitResponseDTO estado(String token) {
+            llamadas.incrementAndGet();
+            return respuesta.get();
+        }
+        
+        @Override
+        public String reembolsar(String token, double amount) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
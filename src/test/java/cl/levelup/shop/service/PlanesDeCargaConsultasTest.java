@@ -0,0 +1,152 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.DatosPrueba;
+import cl.levelup.shop.PruebaBaseDatos;
+import cl.levelup.shop.SecuenciasSql;
+import cl.levelup.shop.dto.request.CarritoItemRequestDTO;
+import cl.levelup.shop.dto.request.PedidoItemRequestDTO;
+import cl.levelup.shop.dto.request.PedidoRequestDTO;
+import cl.levelup.shop.entity.Carrito;
+import cl.levelup.shop.entity.CarritoItem;
+import cl.levelup.shop.entity.Categoria;
+import cl.levelup.shop.entity.Producto;
+import cl.levelup.shop.entity.Usuario;
+import cl.levelup.shop.repository.CarritoItemRepository;
+import cl.levelup.shop.repository.CarritoRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Sentencias SQL por caso de uso, contadas con las estadísticas de Hibernate. Sin la transacción de la
+// prueba cada llamada usa su propio contexto de persistencia, como una request: nada viene de la preparación
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PlanesDeCargaConsultasTest extends PruebaBaseDatos {
+    
+    private static final int LINEAS = 8;
+    
+    @Autowired
+    private PedidoService pedidoService;
+    
+    @Autowired
+    private CarritoService carritoService;
+    
+    @Autowired
+    private ProductoService productoService;
+    
+    @Autowired
+    private CatalogoCache catalogoCache;
+    
+    @Autowired
+    private CarritoRepository carritoRepository;
+    
+    @Autowired
+    private CarritoItemRepository carritoItemRepository;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private DatosPrueba datos;
+    
+    private Statistics estadisticas;
+    private List<Producto> productos;
+    
+    @BeforeEach
+    void setUp() {
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Categoria categoria = datos.categoria();
+        productos = new ArrayList<>(LINEAS);
+        for (int i = 0; i < LINEAS; i++) {
+            productos.add(datos.producto(categoria, 100));
+        }
+    }
+    
+    @Test
+    void vistaDePedidoUsaDosSentencias() {
+        Usuario usuario = datos.usuario();
+        List<PedidoItemRequestDTO> items = new ArrayList<>(LINEAS);
+        for (Producto producto : productos) {
+            items.add(new PedidoItemRequestDTO(producto.getId(), 1, DatosPrueba.PRECIO));
+        }
+        Long pedidoId = pedidoService.crear(new PedidoRequestDTO(usuario.getId(), DatosPrueba.DIRECCION, items)).id();
+        
+        // Pedido con su usuario y una proyección de los items con los datos del producto que se muestran
+        assertEquals(2, contarSentencias(() -> pedidoService.obtenerPorId(pedidoId)));
+        assertEquals(0, cargasDeProductos());
+        assertEquals(2, contarSentencias(() -> pedidoService.obtenerPorUsuario(usuario.getId())));
+        assertEquals(0, cargasDeProductos());
+    }
+    
+    @Test
+    void vistaDeCarritoUsaDosSentenciasAlCargarYLuegoNinguna() {
+        Usuario usuario = datos.usuario();
+        Carrito carrito = carritoRepository.save(Carrito.builder().usuario(usuario).build());
+        List<CarritoItem> items = new ArrayList<>(LINEAS);
+        for (Producto producto : productos) {
+            items.add(CarritoItem.builder()
+                    .carrito(carrito)
+                    .producto(producto)
+                    .cantidad(1)
+                    .precioUnitario(DatosPrueba.PRECIO)
+                    .build());
+        }
+        carritoItemRepository.saveAll(items);
+        // Nombres y códigos salen del snapshot del catálogo: se carga antes para no contarlo aquí
+        productoService.obtenerActivos();
+        
+        // El carrito no estaba en memoria: carrito activo y proyección de sus items
+        assertEquals(2, contarSentencias(() -> carritoService.obtenerCarritoActivo(usuario.getId())));
+        assertEquals(0, cargasDeProductos());
+        assertEquals(0, contarSentencias(() -> carritoService.obtenerCarritoActivo(usuario.getId())));
+    }
+    
+    @Test
+    void checkoutNoCreceConLasLineas() {
+        Usuario conUnaLinea = datos.usuario();
+        Usuario conVarias = datos.usuario();
+        carritoService.agregarProducto(conUnaLinea.getId(), new CarritoItemRequestDTO(productos.get(0).getId(), 1));
+        for (Producto producto : productos) {
+            carritoService.agregarProducto(conVarias.getId(), new CarritoItemRequestDTO(producto.getId(), 1));
+        }
+        
+        // Usuario, carrito activo, items, SELECT ... FOR UPDATE de todos los productos,
+        // y un INSERT o UPDATE en lote por tabla: pedido, items, stock y carrito
+        assertEquals(8, contarSentencias(
+                () -> pedidoService.crearDesdeCarrito(conUnaLinea.getId(), DatosPrueba.DIRECCION)));
+        assertEquals(1, cargasDeProductos());
+        assertEquals(8, contarSentencias(
+                () -> pedidoService.crearDesdeCarrito(conVarias.getId(), DatosPrueba.DIRECCION)));
+        assertEquals(LINEAS, cargasDeProductos());
+        assertEquals(0, estadisticas.getEntityFetchCount());
+    }
+    
+    @Test
+    void catalogoSeCargaEnUnaSentencia() {
+        catalogoCache.invalidar();
+        
+        // Productos con su categoría en un JOIN FETCH: ninguna categoría se carga después por separado
+        assertEquals(1, contarSentencias(() -> productoService.obtenerActivos()));
+        assertEquals(0, estadisticas.getEntityFetchCount());
+    }
+    
+    private long contarSentencias(Runnable caso) {
+        estadisticas.clear();
+        SecuenciasSql.reiniciar();
+        caso.run();
+        return estadisticas.getPrepareStatementCount() - SecuenciasSql.lecturas();
+    }
+    
+    private long cargasDeProductos() {
+        return estadisticas.getEntityStatistics(Producto.class.getName()).getLoadCount();
+    }
+}
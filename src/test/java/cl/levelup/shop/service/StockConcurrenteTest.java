@@ -0,0 +1,136 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.DatosPrueba;
+import cl.levelup.shop.PruebaBaseDatos;
+import cl.levelup.shop.dto.request.PedidoItemRequestDTO;
+import cl.levelup.shop.dto.request.PedidoRequestDTO;
+import cl.levelup.shop.entity.Categoria;
+import cl.levelup.shop.entity.Producto;
+import cl.levelup.shop.exception.InsufficientStockException;
+import cl.levelup.shop.repository.PedidoItemRepository;
+import cl.levelup.shop.repository.ProductoRepository;
+import cl.levelup.shop.repository.projection.VentasProducto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Cada venta confirma su propia transacción: sin la transacción de la prueba, los hilos compiten de verdad
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StockConcurrenteTest extends PruebaBaseDatos {
+    
+    private static final int HILOS = 64;
+    private static final int STOCK_INICIAL = 100;
+    private static final int INTENTOS = 300;
+    
+    @Autowired
+    private PedidoService pedidoService;
+    
+    @Autowired
+    private ProductoService productoService;
+    
+    @Autowired
+    private ProductoRepository productoRepository;
+    
+    @Autowired
+    private PedidoItemRepository pedidoItemRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private DatosPrueba datos;
+    
+    private final ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+    
+    @AfterEach
+    void tearDown() {
+        hilos.shutdownNow();
+    }
+    
+    @Test
+    void checkoutsConcurrentesNoSobrevenden() throws Exception {
+        Long usuarioId = datos.usuario().getId();
+        Producto producto = datos.producto(datos.categoria(), STOCK_INICIAL);
+        PedidoRequestDTO request = new PedidoRequestDTO(usuarioId, DatosPrueba.DIRECCION,
+                List.of(new PedidoItemRequestDTO(producto.getId(), 1, DatosPrueba.PRECIO)));
+        
+        Resultado resultado = ejecutar(() -> pedidoService.crear(request));
+        
+        assertEquals(STOCK_INICIAL, resultado.exitosas());
+        assertEquals(INTENTOS - STOCK_INICIAL, resultado.rechazadas());
+        assertEquals(0, productoRepository.findStockById(producto.getId()));
+        assertEquals(STOCK_INICIAL, unidadesVendidas(producto.getId()));
+    }
+    
+    @Test
+    void ajusteCondicionalNoDejaStockNegativo() throws Exception {
+        Categoria categoria = datos.categoria();
+        Producto guardado = datos.producto(categoria, STOCK_INICIAL);
+        Producto ingenuo = datos.producto(categoria, STOCK_INICIAL);
+        
+        Resultado resultado = ejecutar(() -> productoService.actualizarStock(guardado.getId(), -1));
+        
+        assertEquals(STOCK_INICIAL, resultado.exitosas());
+        assertEquals(0, productoRepository.findStockById(guardado.getId()));
+        
+        // Referencia: el read-modify-write que había antes, sin bloqueo ni versión. Cuántas
+        // actualizaciones se pierden depende de cómo se intercalen los hilos; nunca descuenta de más
+        Resultado lecturaEscritura = ejecutar(() -> transactionTemplate.executeWithoutResult(status -> {
+            Producto producto = productoRepository.findById(ingenuo.getId()).orElseThrow();
+            if (producto.getStock() < 1) {
+                throw new InsufficientStockException("Stock insuficiente para " + producto.getNombre());
+            }
+            producto.setStock(producto.getStock() - 1);
+            productoRepository.save(producto);
+        }));
+        int descontadas = STOCK_INICIAL - productoRepository.findStockById(ingenuo.getId());
+        assertTrue(descontadas <= lecturaEscritura.exitosas());
+    }
+    
+    private Resultado ejecutar(Runnable venta) throws Exception {
+        List<Callable<Boolean>> tareas = new ArrayList<>(INTENTOS);
+        for (int i = 0; i < INTENTOS; i++) {
+            tareas.add(() -> {
+                try {
+                    venta.run();
+                    return true;
+                } catch (InsufficientStockException e) {
+                    return false;
+                }
+            });
+        }
+        
+        // Cualquier otra excepción (deadlock, timeout del pool) hace fallar la prueba en get()
+        List<Future<Boolean>> resultados = hilos.invokeAll(tareas);
+        int exitosas = 0;
+        for (Future<Boolean> resultado : resultados) {
+            if (resultado.get()) {
+                exitosas++;
+            }
+        }
+        return new Resultado(exitosas, INTENTOS - exitosas);
+    }
+    
+    private long unidadesVendidas(Long productoId) {
+        return pedidoItemRepository.sumarUnidadesVendidas().stream()
+                .filter(venta -> venta.productoId().equals(productoId))
+                .mapToLong(VentasProducto::unidades)
+                .sum();
+    }
+    
+    private record Resultado(int exitosas, int rechazadas) {
+    }
+}
@@ -0,0 +1,89 @@
+package cl.levelup.shop.service;
+
+import cl.levelup.shop.dto.response.ProductoResponseDTO;
+import cl.levelup.shop.dto.response.SugerenciaDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SugerenciasIndexTest {
+    
+    private SugerenciasIndex index;
+    
+    @BeforeEach
+    void setUp() {
+        index = new SugerenciasIndex();
+        index.cargarSiEsNecesario(() -> List.of(
+                producto(1L, "MS001", "Mouse Logitech G502", "Logitech"),
+                producto(2L, "MS002", "Mouse Razer Viper", "Razer"),
+                producto(3L, "TC001", "Teclado Logitech G Pro", "Logitech")
+        ), () -> Map.of(2L, 10L, 3L, 5L));
+    }
+    
+    @Test
+    void sugierePorPrefijoDeCualquierPalabraCodigoOMarca() {
+        assertEquals(List.of(2L, 1L), ids(index.sugerir("mou", 10)));
+        assertEquals(List.of(1L), ids(index.sugerir("g50", 10)));
+        assertEquals(List.of(3L, 1L), ids(index.sugerir("LOGI", 10)));
+        assertEquals(List.of(3L), ids(index.sugerir("tc0", 10)));
+        assertEquals(List.of(), ids(index.sugerir("  ", 10)));
+    }
+    
+    @Test
+    void ordenaPorUnidadesVendidasYRespetaElLimite() {
+        assertEquals(List.of(2L), ids(index.sugerir("m", 1)));
+        assertEquals(List.of(3L), ids(index.sugerir("logitech", 1)));
+        
+        index.registrarVentas(Map.of(1L, 20));
+        assertEquals(List.of(1L, 2L), ids(index.sugerir("mouse", 10)));
+    }
+    
+    @Test
+    void aIgualdadDeVentasGanaElIdMenor() {
+        index.registrarVentas(Map.of(1L, 5));
+        assertEquals(List.of(1L, 3L), ids(index.sugerir("logitech", 10)));
+    }
+    
+    @Test
+    void indexarYRemoverMantienenElIndice() {
+        index.indexar(producto(2L, "MS002", "Mouse Razer Basilisk", "Razer"));
+        assertEquals(List.of(), ids(index.sugerir("viper", 10)));
+        assertEquals("Mouse Razer Basilisk", index.sugerir("basilisk", 10).get(0).nombre());
+        
+        index.indexar(inactivo(3L));
+        assertEquals(List.of(1L), ids(index.sugerir("logitech", 10)));
+        
+        index.remover(1L);
+        assertEquals(List.of(), ids(index.sugerir("logitech", 10)));
+    }
+    
+    @Test
+    void antesDeLaCargaNoSeAcumulaNada() {
+        SugerenciasIndex vacio = new SugerenciasIndex();
+        vacio.indexar(producto(9L, "WB001", "Webcam", "Logitech"));
+        vacio.registrarVentas(Map.of(9L, 100));
+        vacio.cargarSiEsNecesario(() -> List.of(producto(8L, "WB002", "Webcam HD", "Genius")), Map::of);
+        
+        assertEquals(List.of(8L), ids(vacio.sugerir("webcam", 10)));
+    }
+    
+    private static List<Long> ids(List<SugerenciaDTO> sugerencias) {
+        return sugerencias.stream().map(SugerenciaDTO::id).collect(Collectors.toList());
+    }
+    
+    private static ProductoResponseDTO producto(Long id, String code, String nombre, String marca) {
+        return new ProductoResponseDTO(id, code, nombre, "MS", "Mouse", BigDecimal.TEN, 1, marca,
+                BigDecimal.ONE, null, null, null, null, true);
+    }
+    
+    private static ProductoResponseDTO inactivo(Long id) {
+        return new ProductoResponseDTO(id, "TC00" + id, "Teclado", "TC", "Teclados", BigDecimal.TEN, 1, "Logitech",
+                BigDecimal.ONE, null, null, null, null, false);
+    }
+}